@@ -0,0 +1,50 @@
+package io.milkwang.benchmark.common;
+
+import io.milkwang.util.common.QueryStringBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 拼接调用第三方接口的url：解析已有参数、追加参数、编码输出
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryStringBuilderBenchmark {
+    private final String url = "https://api.milkwang.io/v1/orders?page=1&size=20&sort=createTime";
+    private final List<Integer> status = Arrays.asList(1, 2, 3);
+    private final Map<String, String> signParams = new LinkedHashMap<>();
+
+    {
+        signParams.put("timestamp", "1600000000000");
+        signParams.put("nonce", "a8f3k2m9");
+        signParams.put("appId", "milk-shop");
+        signParams.put("sign", "5d41402abc4b2a76b9719d911017c592");
+    }
+
+    @Benchmark
+    public String build() {
+        return QueryStringBuilder.create(url)
+                .append("status", status)
+                .append("keyword", "牛奶 & 面包")
+                .append(signParams)
+                .remove("sort")
+                .toString();
+    }
+}
@@ -0,0 +1,48 @@
+package io.milkwang.benchmark.excel;
+
+import io.milkwang.util.excel.ExcelUtils;
+import io.milkwang.util.excel.entity.Excel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 将查询结果转换为Excel内存模型，不包含输出
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExcelBuilderBenchmark {
+    @Param({"1000", "10000"})
+    public int rows;
+
+    private List<ExcelRenderBenchmark.Order> orders;
+
+    @Setup
+    public void setup() {
+        orders = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            orders.add(new ExcelRenderBenchmark.Order(i));
+        }
+    }
+
+    @Benchmark
+    public Excel addSheet() {
+        return ExcelUtils.builder().name("benchmark").addSheet("订单", orders).build();
+    }
+}
@@ -0,0 +1,92 @@
+package io.milkwang.benchmark.excel;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.milkwang.util.excel.ExcelUtils;
+import io.milkwang.util.excel.entity.Excel;
+import io.milkwang.util.excel.helper.AtomType;
+import io.milkwang.util.excel.helper.ExcelBuilder;
+import io.milkwang.util.excel.helper.ExcelFormat;
+import io.milkwang.util.excel.helper.JxlAtom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多sheet渲染：串行(directExecutor) 对比 共享渲染线程池并行<br/>
+ * 加速比取决于CPU核数，单核机器上两者应基本持平，需要在多核机器上运行才能看到并行的效果，
+ * 结果记录在results/changes.txt中
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExcelRenderBenchmark {
+    @Param({"1", "4", "16"})
+    public int sheetCount;
+    @Param({"2000"})
+    public int rowsPerSheet;
+
+    private Excel excel;
+
+    @Setup
+    public void setup() {
+        ExcelBuilder builder = ExcelUtils.builder().name("benchmark");
+        for (int sheet = 0; sheet < sheetCount; sheet++) {
+            List<Order> orders = new ArrayList<>(rowsPerSheet);
+            for (int i = 0; i < rowsPerSheet; i++) {
+                orders.add(new Order(i));
+            }
+            builder.addSheet("sheet" + sheet, orders);
+        }
+        excel = builder.build();
+    }
+
+    @Benchmark
+    public void sequential() throws IOException {
+        ExcelUtils.writeExcel(excel, ExcelFormat.XLSX, ByteStreams.nullOutputStream(), MoreExecutors.directExecutor());
+    }
+
+    @Benchmark
+    public void parallel() throws IOException {
+        ExcelUtils.writeExcel(excel, ExcelFormat.XLSX, ByteStreams.nullOutputStream());
+    }
+
+    public static class Order {
+        @JxlAtom(name = "订单号", order = 0, type = AtomType.STRING)
+        private final String orderNo;
+        @JxlAtom(name = "金额", order = 1)
+        private final BigDecimal amount;
+        @JxlAtom(name = "数量", order = 2)
+        private final Integer count;
+        @JxlAtom(name = "下单时间", order = 3, type = AtomType.DATETIME)
+        private final Date createTime;
+        @JxlAtom(name = "日期", order = 4, type = AtomType.DATE)
+        private final Date day;
+
+        public Order(int i) {
+            this.orderNo = "NO" + (100000 + i);
+            this.amount = BigDecimal.valueOf(i * 31L, 2);
+            this.count = i % 17;
+            this.createTime = new Date(1600000000000L + i * 60000L);
+            this.day = createTime;
+        }
+    }
+}
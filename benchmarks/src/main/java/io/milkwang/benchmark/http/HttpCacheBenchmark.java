@@ -0,0 +1,101 @@
+package io.milkwang.benchmark.http;
+
+import com.sun.net.httpserver.HttpServer;
+import io.milkwang.util.http.HttpHelper;
+import io.milkwang.util.http.ResponseCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 配置接口的GET：不使用缓存 对比 max-age内直接命中 对比 每次用ETag重新验证(304)<br/>
+ * 下游是本机的HttpServer，每个请求固定延迟2毫秒
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpCacheBenchmark {
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private String freshUrl;
+    private String etagUrl;
+    private ResponseCache cache;
+
+    @Setup
+    public void setup() throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 100; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"code\":\"dict").append(i).append("\",\"name\":\"字典项").append(i).append("\"}");
+        }
+        byte[] body = json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.createContext("/", exchange -> {
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (exchange.getRequestURI().getPath().startsWith("/fresh")) {
+                exchange.getResponseHeaders().set("Cache-Control", "max-age=3600");
+            } else {
+                exchange.getResponseHeaders().set("ETag", "\"v1\"");
+                if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        freshUrl = base + "/fresh";
+        etagUrl = base + "/etag";
+        cache = new ResponseCache(16 * 1024 * 1024);
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public int noCache() {
+        return HttpHelper.create(freshUrl).methodGet().resultNoThrow().length();
+    }
+
+    @Benchmark
+    public int cachedFresh() {
+        return HttpHelper.create(freshUrl).cache(cache).methodGet().resultNoThrow().length();
+    }
+
+    @Benchmark
+    public int cachedRevalidate() {
+        return HttpHelper.create(etagUrl).cache(cache).methodGet().resultNoThrow().length();
+    }
+}
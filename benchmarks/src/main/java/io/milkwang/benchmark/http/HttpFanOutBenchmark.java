@@ -0,0 +1,97 @@
+package io.milkwang.benchmark.http;
+
+import com.sun.net.httpserver.HttpServer;
+import io.milkwang.util.http.HttpHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 聚合接口调用多个下游：逐个execute 对比 fanOut并发执行<br/>
+ * 下游是本机的HttpServer，每个请求固定延迟delayMillis毫秒，模拟下游服务的处理时间
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpFanOutBenchmark {
+    @Param({"5"})
+    public int calls;
+
+    @Param({"20"})
+    public int delayMillis;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private String url;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] body = "{\"code\":200,\"msg\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.createContext("/", exchange -> {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api";
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public int sequential() {
+        int length = 0;
+        for (int i = 0; i < calls; i++) {
+            length += HttpHelper.create(url).methodGet().resultNoThrow().length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int fanOut() {
+        List<HttpHelper> helpers = new ArrayList<>(calls);
+        for (int i = 0; i < calls; i++) {
+            helpers.add(HttpHelper.create(url).methodGet());
+        }
+        int length = 0;
+        for (HttpHelper helper : HttpHelper.fanOut(helpers, 5, TimeUnit.SECONDS).join()) {
+            length += helper.resultNoThrow().length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,156 @@
+package io.milkwang.benchmark.http;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.sun.net.httpserver.HttpServer;
+import io.milkwang.util.http.HttpHelper;
+import io.milkwang.util.http.JsonArrayIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解析下游返回的大JSON数组：先转String再解析(legacy) 对比 直接从字节解析(getList) 对比 逐个元素读取(iterateList)<br/>
+ * 下游是本机的HttpServer，返回预先生成的字节，用-prof gc对比每次调用分配的内存
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx1g"})
+public class HttpJsonBenchmark {
+    @Param({"1000", "50000"})
+    public int items;
+
+    private HttpServer server;
+    private String url;
+
+    @Setup
+    public void setup() throws IOException {
+        List<Order> orders = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            Order order = new Order();
+            order.setId(i);
+            order.setOrderNo("NO" + (100000000L + i));
+            order.setUsername("用户" + i);
+            order.setAmount(new BigDecimal("199.90"));
+            order.setStatus(i % 4);
+            order.setRemark("备注, with \"quotes\" and [brackets] " + i);
+            orders.add(order);
+        }
+        byte[] body = JSON.toJSONString(orders).getBytes(StandardCharsets.UTF_8);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/orders";
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Benchmark
+    public int legacy() {
+        String result = HttpHelper.create(url).methodGet().resultNoThrow();
+        return JSONArray.parseArray(result, Order.class).size();
+    }
+
+    @Benchmark
+    public int getList() {
+        return HttpHelper.create(url).methodGet().getList(Order.class).size();
+    }
+
+    @Benchmark
+    public int iterateList() throws IOException {
+        int count = 0;
+        try (JsonArrayIterator<Order> orders = HttpHelper.create(url).methodGet().iterateList(Order.class)) {
+            while (orders.hasNext()) {
+                count += orders.next().getStatus();
+            }
+        }
+        return count;
+    }
+
+    public static class Order {
+        private long id;
+        private String orderNo;
+        private String username;
+        private BigDecimal amount;
+        private int status;
+        private String remark;
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public String getOrderNo() {
+            return orderNo;
+        }
+
+        public void setOrderNo(String orderNo) {
+            this.orderNo = orderNo;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public void setAmount(BigDecimal amount) {
+            this.amount = amount;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public void setStatus(int status) {
+            this.status = status;
+        }
+
+        public String getRemark() {
+            return remark;
+        }
+
+        public void setRemark(String remark) {
+            this.remark = remark;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package io.milkwang.benchmark.http;
+
+import io.milkwang.util.http.URLEncodedUtils;
+import org.apache.http.NameValuePair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 表单/queryString的解析与编码，包含中文和需要转义的字符
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class URLEncodedUtilsBenchmark {
+    private final String query = "page=1&size=20&keyword=%E7%89%9B%E5%A5%B6+%26+%E9%9D%A2%E5%8C%85&status=1&status=2"
+            + "&callback=https%3A%2F%2Fshop.milkwang.io%2Fpay%2Fnotify%3Fid%3D123&timestamp=1600000000000"
+            + "&nonce=a8f3k2m9&appId=milk-shop&sign=5d41402abc4b2a76b9719d911017c592";
+    private List<NameValuePair> params;
+
+    @Setup
+    public void setup() {
+        params = URLEncodedUtils.parse(query, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<NameValuePair> parse() {
+        return URLEncodedUtils.parse(query, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String format() {
+        return URLEncodedUtils.format(params, "utf-8");
+    }
+}
@@ -0,0 +1,37 @@
+package io.milkwang.benchmark.image;
+
+import io.milkwang.util.image.QRCodeUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 生成分享/支付二维码
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class QRCodeBenchmark {
+    @Param({"300"})
+    public int size;
+
+    private final String content = "https://shop.milkwang.io/pay?orderNo=NO100123&amount=99.80&sign=5d41402abc4b2a76b9719d911017c592";
+
+    @Benchmark
+    public BufferedImage genQRCode() {
+        return QRCodeUtils.genQRCode(content, size, size);
+    }
+}
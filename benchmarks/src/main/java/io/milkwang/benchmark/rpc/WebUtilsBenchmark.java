@@ -0,0 +1,127 @@
+package io.milkwang.benchmark.rpc;
+
+import com.alibaba.fastjson.JSON;
+import io.milkwang.framework.rpc.Result;
+import io.milkwang.framework.rpc.WebUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接口返回json，payloadBytes为序列化后的大致大小
+ * <ul>
+ *     <li>responseJson：序列化为UTF-8字节直接写入OutputStream</li>
+ *     <li>legacyResponseJson：原来的实现，toJSONString后写入Writer，由容器编码为UTF-8</li>
+ * </ul>
+ * 比较内存分配时加上-prof gc<br/>
+ * MockHttpServletResponse的OutputStream只实现了write(int)，批量写入会逐字节执行，这里换成与容器一样支持批量写入的实现
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebUtilsBenchmark {
+    @Param({"1024", "102400", "10485760"})
+    public int payloadBytes;
+
+    private Result<List<Map<String, Object>>> result;
+
+    @Setup
+    public void setup() {
+        List<Map<String, Object>> orders = new ArrayList<>();
+        result = Result.create(orders);
+        // 每次增加1/8，避免大的payload反复序列化
+        while (JSON.toJSONString(result).length() < payloadBytes) {
+            int batch = Math.max(1, orders.size() / 8);
+            for (int i = 0; i < batch; i++) {
+                orders.add(order(orders.size()));
+            }
+        }
+    }
+
+    @Benchmark
+    public int responseJson() {
+        BufferedResponse response = new BufferedResponse();
+        WebUtils.responseJson(response, result);
+        return response.body.size();
+    }
+
+    @Benchmark
+    public int legacyResponseJson() throws IOException {
+        BufferedResponse response = new BufferedResponse();
+        response.setCharacterEncoding("utf-8");
+        response.setContentType("application/json; charset=utf-8");
+        try (Writer writer = response.getWriter()) {
+            writer.write(JSON.toJSONString(result));
+        }
+        return response.body.size();
+    }
+
+    static Map<String, Object> order(int i) {
+        Map<String, Object> order = new LinkedHashMap<>();
+        order.put("orderNo", "NO" + (100000 + i));
+        order.put("buyer", "张三" + i);
+        order.put("amount", i * 31 / 100.0);
+        order.put("status", i % 4);
+        order.put("createTime", 1600000000000L + i * 60000L);
+        return order;
+    }
+
+    static class BufferedResponse extends MockHttpServletResponse {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return new ServletOutputStream() {
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                }
+
+                @Override
+                public void write(int b) {
+                    body.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    body.write(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            return new PrintWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8));
+        }
+    }
+}
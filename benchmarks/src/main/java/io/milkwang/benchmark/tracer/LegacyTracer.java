@@ -0,0 +1,76 @@
+package io.milkwang.benchmark.tracer;
+
+import io.milkwang.framework.tracer.TraderCodeGenerator;
+import io.milkwang.framework.tracer.TracerUtils;
+import io.milkwang.util.http.HttpHelper;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.MDC;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+import java.net.URI;
+import java.net.URLDecoder;
+
+/**
+ * 改写前的TracerUtils.putMDCInfoFromRequest和IpUtils.getIpAddr，只用于对比
+ */
+final class LegacyTracer {
+    private LegacyTracer() {
+    }
+
+    static void putMDCInfoFromRequest(ServletRequest servletRequest) {
+        try {
+            HttpServletRequest request = (HttpServletRequest) servletRequest;
+            String ip = getIpAddr(request);
+            String page = "";
+            String referer = request.getHeader(HttpHelper.REFERER_HEADER);
+            String milkCode = request.getHeader(HttpHelper.MILK_CODE_HEADER);
+            String requestId = request.getHeader(HttpHelper.MILK_REQUEST_ID_HEADER);
+            String username = request.getHeader(HttpHelper.MILK_USER_NAME);
+            if (requestId == null || requestId.length() == 0) {
+                requestId = TraderCodeGenerator.generateRequestId();
+            }
+            if (referer != null) {
+                URI url = URI.create(referer);
+                page = url.getScheme() + "://" + url.getHost() + url.getPath();
+            }
+            MDC.put(TracerUtils.MDC_KEY_IP, ip);
+            MDC.put(TracerUtils.MDC_KEY_REFERER, page);
+            MDC.put(TracerUtils.MDC_KEY_MILK_CODE, milkCode);
+            MDC.put(TracerUtils.MDC_KEY_REQUEST_ID, requestId);
+            if (StringUtils.isNotEmpty(username)) {
+                MDC.put(TracerUtils.MDC_KEY_USERNAME, URLDecoder.decode(username, "utf-8"));
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String getIpAddr(HttpServletRequest request) {
+        String ip = request.getHeader("x-forwarded-for");
+        if (ip != null && ip.length() != 0 && !"unknown".equalsIgnoreCase(ip)) {
+            if (ip.contains(",")) {
+                ip = ip.split(",")[0];
+            }
+        }
+        if (ip == null || ip.length() == 0 || "unknown".equalsIgnoreCase(ip)) {
+            ip = request.getHeader("Proxy-Client-IP");
+        }
+        if (ip == null || ip.length() == 0 || "unknown".equalsIgnoreCase(ip)) {
+            ip = request.getHeader("WL-Proxy-Client-IP");
+        }
+        if (ip == null || ip.length() == 0 || "unknown".equalsIgnoreCase(ip)) {
+            ip = request.getHeader("HTTP_CLIENT_IP");
+        }
+        if (ip == null || ip.length() == 0 || "unknown".equalsIgnoreCase(ip)) {
+            ip = request.getHeader("HTTP_X_FORWARDED_FOR");
+        }
+        if (ip == null || ip.length() == 0 || "unknown".equalsIgnoreCase(ip)) {
+            ip = request.getHeader("X-Real-IP");
+        }
+        if (ip == null || ip.length() == 0 || "unknown".equalsIgnoreCase(ip)) {
+            ip = request.getRemoteAddr();
+        }
+        return ip;
+    }
+}
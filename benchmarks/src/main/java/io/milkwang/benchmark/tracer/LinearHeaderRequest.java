@@ -0,0 +1,62 @@
+package io.milkwang.benchmark.tracer;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+
+/**
+ * 与Tomcat的MimeHeaders一样按顺序保存请求头，getHeader逐个equalsIgnoreCase比较；
+ * MockHttpServletRequest使用哈希表，会低估逐个getHeader的开销
+ */
+final class LinearHeaderRequest extends HttpServletRequestWrapper {
+    private final String[] names;
+    private final String[] values;
+
+    LinearHeaderRequest(String remoteAddr, String... headers) {
+        super(mockRequest(remoteAddr));
+        this.names = new String[headers.length / 2];
+        this.values = new String[headers.length / 2];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = headers[i * 2];
+            values[i] = headers[i * 2 + 1];
+        }
+    }
+
+    private static MockHttpServletRequest mockRequest(String remoteAddr) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/order/list");
+        request.setRemoteAddr(remoteAddr);
+        return request;
+    }
+
+    @Override
+    public String getHeader(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equalsIgnoreCase(name)) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Enumeration<String> getHeaderNames() {
+        return new Enumeration<String>() {
+            private int index;
+
+            @Override
+            public boolean hasMoreElements() {
+                return index < names.length;
+            }
+
+            @Override
+            public String nextElement() {
+                if (index >= names.length) {
+                    throw new NoSuchElementException();
+                }
+                return names[index++];
+            }
+        };
+    }
+}
@@ -0,0 +1,74 @@
+package io.milkwang.benchmark.tracer;
+
+import io.milkwang.framework.tracer.RequestIdMode;
+import io.milkwang.framework.tracer.TraceContext;
+import io.milkwang.framework.tracer.TraderCodeGenerator;
+import io.milkwang.framework.tracer.TracerUtils;
+import io.milkwang.util.http.HttpHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个请求都会经过的TracerFilter：从请求头解析MDC信息、生成requestId；以及把MDC带到其他线程的开销
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TracerBenchmark {
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setup() {
+        request = new MockHttpServletRequest("GET", "/order/list");
+        request.setRemoteAddr("10.0.0.8");
+        request.addHeader("x-forwarded-for", "203.0.113.7, 10.0.0.1");
+        request.addHeader(HttpHelper.REFERER_HEADER, "https://shop.milkwang.io/order/detail?id=123&from=list#top");
+        request.addHeader(HttpHelper.MILK_CODE_HEADER, "0f8e2c9a7b6d4e1f");
+        request.addHeader(HttpHelper.MILK_USER_NAME, "%E5%BC%A0%E4%B8%89");
+        TracerUtils.putMDCInfoFromRequest(request);
+    }
+
+    /**
+     * 请求中没有requestId，需要现场生成
+     */
+    @Benchmark
+    public String putMDCInfoFromRequest() {
+        TracerUtils.putMDCInfoFromRequest(request);
+        return MDC.get(TracerUtils.MDC_KEY_REQUEST_ID);
+    }
+
+    @Benchmark
+    public String generateRequestId() {
+        return TraderCodeGenerator.generateRequestId();
+    }
+
+    @Benchmark
+    public String snowflakeBase62() {
+        return RequestIdMode.SNOWFLAKE_BASE62.generate();
+    }
+
+    /**
+     * 提交任务时获取快照，执行时替换并恢复MDC，这里在同一线程执行，只统计追踪本身的开销
+     */
+    @Benchmark
+    public String captureAndRun() {
+        String[] result = new String[1];
+        TraceContext.capture().wrap((Runnable) () -> result[0] = MDC.get(TracerUtils.MDC_KEY_REQUEST_ID)).run();
+        return result[0];
+    }
+}
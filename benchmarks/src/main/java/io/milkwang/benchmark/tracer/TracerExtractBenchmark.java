@@ -0,0 +1,74 @@
+package io.milkwang.benchmark.tracer;
+
+import io.milkwang.framework.tracer.TracerUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.MDC;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TracerFilter从请求中提取MDC信息：改写前(legacy) 对比 当前实现(current)<br/>
+ * proxy: 经过nginx转发，带x-forwarded-for；direct: 没有任何代理ip请求头，需要遍历全部候选
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TracerExtractBenchmark {
+    @Param({"proxy", "direct"})
+    public String scenario;
+
+    private HttpServletRequest request;
+
+    @Setup
+    public void setup() {
+        String[] common = {
+                "Host", "shop.milkwang.io",
+                "Connection", "keep-alive",
+                "Accept", "application/json, text/plain, */*",
+                "User-Agent", "Mozilla/5.0 (iPhone; CPU iPhone OS 16_0 like Mac OS X) AppleWebKit/605.1.15 MicroMessenger/8.0.30",
+                "Accept-Encoding", "gzip, deflate, br",
+                "Accept-Language", "zh-CN,zh;q=0.9",
+                "Cookie", "JSESSIONID=8f2a9c1e4b7d; milk_token=5d41402abc4b2a76b9719d911017c592",
+                "Referer", "https://shop.milkwang.io/order/detail?id=123&from=list#top",
+                "Milk-Code", "0f8e2c9a7b6d4e1f",
+                "Milk-Username", "%E5%BC%A0%E4%B8%89",
+        };
+        if ("proxy".equals(scenario)) {
+            String[] headers = new String[common.length + 4];
+            System.arraycopy(common, 0, headers, 0, common.length);
+            headers[common.length] = "X-Forwarded-For";
+            headers[common.length + 1] = "203.0.113.7, 10.0.0.1";
+            headers[common.length + 2] = "X-Real-IP";
+            headers[common.length + 3] = "10.0.0.1";
+            request = new LinearHeaderRequest("10.0.0.8", headers);
+        } else {
+            request = new LinearHeaderRequest("203.0.113.7", common);
+        }
+    }
+
+    @Benchmark
+    public String legacy() {
+        LegacyTracer.putMDCInfoFromRequest(request);
+        return MDC.get(TracerUtils.MDC_KEY_REFERER);
+    }
+
+    @Benchmark
+    public String current() {
+        TracerUtils.putMDCInfoFromRequest(request);
+        return MDC.get(TracerUtils.MDC_KEY_REFERER);
+    }
+}
@@ -0,0 +1,76 @@
+package io.milkwang.benchmark.verifier;
+
+import io.milkwang.framework.verifier.Verifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller入参校验的典型链路，valid=true时全部通过，false时每一项都失败并格式化错误信息
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VerifierBenchmark {
+    @Param({"true", "false"})
+    public boolean valid;
+
+    private String name;
+    private String mobile;
+    private String mail;
+    private String idCard;
+    private String remark;
+    private BigDecimal amount;
+    private List<Long> skuIds;
+
+    @Setup
+    public void setup() {
+        if (valid) {
+            name = "张三";
+            mobile = "13812345678";
+            mail = "zhangsan@milkwang.io";
+            idCard = "11010519491231002X";
+            remark = "尽快发货";
+            amount = new BigDecimal("99.80");
+            skuIds = Arrays.asList(1001L, 1002L);
+        } else {
+            name = " ";
+            mobile = "1381234";
+            mail = "zhangsan#milkwang.io";
+            idCard = "110105194912310021";
+            remark = String.join("", Collections.nCopies(30, "备注文字"));
+            amount = new BigDecimal("-1");
+            skuIds = Collections.emptyList();
+        }
+    }
+
+    @Benchmark
+    public boolean chain() {
+        return Verifier.create()
+                .isNotBlank(name, "姓名不能为空")
+                .isMobile(mobile, "手机号%s格式错误", mobile)
+                .isMail(mail, "邮箱%s格式错误", mail)
+                .isIdCard(idCard, "身份证号%s格式错误", idCard)
+                .isNotLongerThan(remark, 100, "备注不能超过%d个字", 100)
+                .isPositiveNumber(amount, "金额必须大于0")
+                .isNotEmpty(skuIds, "请选择商品")
+                .hasError();
+    }
+}
@@ -2,8 +2,14 @@ package io.milkwang.framework.rpc;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.serializer.SerializeConfig;
+import com.alibaba.fastjson2.JSONWriter;
 import com.google.common.collect.Lists;
 import io.milkwang.framework.exception.ShowTypeEnum;
+import io.milkwang.util.excel.ExcelStreamWriter;
+import io.milkwang.util.excel.ExcelUtils;
+import io.milkwang.util.excel.entity.Excel;
+import io.milkwang.util.excel.helper.ExcelFormat;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,8 +17,12 @@ import org.slf4j.LoggerFactory;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.net.URLEncoder;
 import java.util.List;
 
 /**
@@ -77,27 +87,116 @@ public class WebUtils {
     }
 
     /**
-     * 输出json类型返回值
+     * 输出json类型返回值<br/>
+     * 直接序列化为UTF-8字节写入OutputStream，不生成中间的String；序列化使用fastjson2按线程复用的字节缓冲区，
+     * 输出与JSON.toJSONString一致。已经调用过getWriter时(例如Controller写了一半后抛出异常)改用Writer输出
      *
      * @param response Response
      * @param json     Object
      */
     public static void responseJson(HttpServletResponse response, Object json) {
-        Writer writer = null;
-        try {
+        JSONWriter.Context context = JSON.createWriteContext(SerializeConfig.global, JSON.DEFAULT_GENERATE_FEATURE);
+        try (JSONWriter jsonWriter = JSONWriter.ofUTF8(context)) {
+            jsonWriter.setRootObject(json);
+            if (json == null) {
+                jsonWriter.writeNull();
+            } else {
+                context.getObjectWriter(json.getClass()).write(jsonWriter, json, null, null, 0);
+            }
             response.setCharacterEncoding("utf-8");
             response.setContentType("application/json; charset=utf-8");
-            writer = response.getWriter();
-            writer.write(JSON.toJSONString(json));
-        } catch (Exception e) {
-            LOGGER.error(e.getLocalizedMessage(), e);
-        } finally {
-            if (writer != null) {
+            OutputStream out;
+            try {
+                out = response.getOutputStream();
+            } catch (IllegalStateException e) {
+                Writer writer = response.getWriter();
+                writer.write(jsonWriter.toString());
                 IOUtils.closeQuietly(writer);
+                return;
             }
+            jsonWriter.flushTo(out);
+            IOUtils.closeQuietly(out);
+        } catch (Exception e) {
+            LOGGER.error(e.getLocalizedMessage(), e);
+        }
+    }
+
+    /**
+     * 设置文件下载的响应头，不设置Content-Length，由容器使用chunked方式边写边发送<br/>
+     * filename*为UTF-8编码的文件名；不支持filename*的旧客户端使用filename中的ASCII文件名，非ASCII字符替换为_；
+     * 只有文本类型的contentType才加上charset
+     *
+     * @param response    Response
+     * @param fileName    下载的文件名，支持中文
+     * @param contentType 文件类型
+     */
+    public static void setDownloadHeaders(HttpServletResponse response, String fileName, String contentType) {
+        String encodedName;
+        try {
+            encodedName = URLEncoder.encode(fileName, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            encodedName = fileName;
+        }
+        if (isTextContentType(contentType)) {
+            response.setCharacterEncoding("utf-8");
+        }
+        response.setContentType(contentType);
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + asciiFileName(fileName)
+                + "\"; filename*=UTF-8''" + encodedName);
+    }
+
+    private static boolean isTextContentType(String contentType) {
+        String type = contentType == null ? "" : contentType.toLowerCase();
+        return type.startsWith("text/") || type.startsWith("application/json") || type.startsWith("application/xml")
+                || type.contains("+json") || type.contains("+xml");
+    }
+
+    /**
+     * 旧客户端不会解码filename中的%xx，直接显示；非ASCII字符、引号、反斜杠和%替换为_
+     */
+    private static String asciiFileName(String fileName) {
+        StringBuilder builder = new StringBuilder(fileName.length());
+        for (int i = 0; i < fileName.length(); i++) {
+            char c = fileName.charAt(i);
+            builder.append(c < 0x20 || c > 0x7E || c == '"' || c == '\\' || c == '%' ? '_' : c);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 将excel直接输出到Response，不经过临时文件
+     *
+     * @param response Response
+     * @param excel    excel数据
+     * @param format   输出格式
+     */
+    public static void responseExcel(HttpServletResponse response, Excel excel, ExcelFormat format) {
+        try {
+            setDownloadHeaders(response, ExcelUtils.getFileName(excel, format), format.getContentType());
+            ExcelUtils.writeExcel(excel, format, response.getOutputStream());
+        } catch (Exception e) {
+            LOGGER.error(e.getLocalizedMessage(), e);
         }
     }
 
+    /**
+     * 创建直接写入Response的流式Excel，数据可以边查边写，例如：
+     * <pre>
+     * try (ExcelStreamWriter writer = WebUtils.responseExcelStream(response, "订单", ExcelFormat.XLSX)) {
+     *     writer.writeSheet("订单", orderMapper.cursor());
+     * }
+     * </pre>
+     *
+     * @param response Response
+     * @param name     文件名，不带后缀
+     * @param format   输出格式
+     * @return 流式Excel，需要调用方close
+     */
+    public static ExcelStreamWriter responseExcelStream(HttpServletResponse response, String name, ExcelFormat format) throws IOException {
+        setDownloadHeaders(response, name + format.getExtension(), format.getContentType());
+        return ExcelStreamWriter.create(response.getOutputStream(), format);
+    }
+
     public static JSONObject parseRequestBody(HttpServletRequest request) {
         String reqBody = null;
         try {
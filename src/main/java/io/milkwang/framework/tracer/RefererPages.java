@@ -0,0 +1,206 @@
+package io.milkwang.framework.tracer;
+
+import java.net.URI;
+
+/**
+ * 将referer转换为"scheme://host/path"形式的页面地址，结果与
+ * <pre>
+ * URI url = URI.create(referer);
+ * url.getScheme() + "://" + url.getHost() + url.getPath()
+ * </pre>
+ * 一致，只是常见的referer由手写的扫描器处理，不再创建URI对象<br/>
+ * 扫描器只处理全部是ASCII、path中没有转义字符的referer，其余情况仍然交给URI解析；
+ * 之前URI.create报错时整个MDC都不会设置，现在页面地址记为空字符串
+ *
+ * @author nethunder
+ */
+final class RefererPages {
+    /**
+     * 最近解析过的referer，按hash直接映射，冲突时覆盖；Entry不可变，多线程读写不需要加锁
+     */
+    private static final int CACHE_SIZE = 256;
+    private static final int MAX_CACHED_LENGTH = 512;
+    private static final Entry[] CACHE = new Entry[CACHE_SIZE];
+    private static final int MAX_PORT_LENGTH = 5;
+
+    private RefererPages() {
+    }
+
+    static String toPage(String referer) {
+        int hash = referer.hashCode();
+        int index = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+        Entry entry = CACHE[index];
+        if (entry != null && entry.referer.equals(referer)) {
+            return entry.page;
+        }
+        String page = parse(referer);
+        if (referer.length() <= MAX_CACHED_LENGTH) {
+            CACHE[index] = new Entry(referer, page);
+        }
+        return page;
+    }
+
+    static String parse(String referer) {
+        String page = scan(referer);
+        return page != null ? page : parseByUri(referer);
+    }
+
+    private static String parseByUri(String referer) {
+        try {
+            URI url = URI.create(referer);
+            return url.getScheme() + "://" + url.getHost() + url.getPath();
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    /**
+     * 扫描scheme://host[:port]path[?query][#fragment]，遇到扫描器不处理的情况返回null
+     */
+    private static String scan(String referer) {
+        int length = referer.length();
+        if (length == 0 || !isAlpha(referer.charAt(0))) {
+            return null;
+        }
+        int i = 1;
+        while (i < length && isSchemeChar(referer.charAt(i))) {
+            i++;
+        }
+        if (!referer.startsWith("://", i)) {
+            return null;
+        }
+        int hostStart = i + 3;
+        int hostEnd = scanHost(referer, hostStart);
+        if (hostEnd < 0) {
+            return null;
+        }
+        i = hostEnd;
+        if (i < length && referer.charAt(i) == ':') {
+            int portStart = ++i;
+            while (i < length && isDigit(referer.charAt(i))) {
+                i++;
+            }
+            if (i == portStart || i - portStart > MAX_PORT_LENGTH
+                    || (i < length && referer.charAt(i) != '/' && referer.charAt(i) != '?' && referer.charAt(i) != '#')) {
+                return null;
+            }
+        }
+        int pathStart = i;
+        while (i < length) {
+            char c = referer.charAt(i);
+            if (c == '?' || c == '#') {
+                break;
+            }
+            if (!isPathChar(c)) {
+                return null;
+            }
+            i++;
+        }
+        int pathEnd = i;
+        // query和fragment不会输出，但URI.create会校验其中的字符，这里保持一致
+        boolean fragment = false;
+        while (i < length) {
+            char c = referer.charAt(i);
+            if (c == '#') {
+                if (fragment) {
+                    return null;
+                }
+                fragment = true;
+            } else if (c == '%') {
+                if (i + 2 >= length || !isHex(referer.charAt(i + 1)) || !isHex(referer.charAt(i + 2))) {
+                    return null;
+                }
+                i += 2;
+            } else if (!isQueryChar(c)) {
+                return null;
+            }
+            i++;
+        }
+        if (pathEnd == length && i == length && pathStart == hostEnd) {
+            // 没有端口、path、query时页面地址就是referer本身
+            return referer;
+        }
+        StringBuilder page = new StringBuilder(pathEnd);
+        page.append(referer, 0, hostEnd);
+        page.append(referer, pathStart, pathEnd);
+        return page.toString();
+    }
+
+    /**
+     * 扫描由字母、数字、'-'组成的域名，返回域名结束的位置；
+     * IP、以数字开头的顶级域名等URI有特殊规则的情况返回-1
+     */
+    private static int scanHost(String referer, int start) {
+        int length = referer.length();
+        int i = start;
+        int labelStart;
+        while (true) {
+            if (i >= length || !isAlphaNumeric(referer.charAt(i))) {
+                return -1;
+            }
+            labelStart = i;
+            while (i < length && (isAlphaNumeric(referer.charAt(i)) || referer.charAt(i) == '-')) {
+                i++;
+            }
+            if (referer.charAt(i - 1) == '-') {
+                return -1;
+            }
+            if (i < length && referer.charAt(i) == '.') {
+                i++;
+                continue;
+            }
+            break;
+        }
+        if (isDigit(referer.charAt(labelStart))) {
+            return -1;
+        }
+        if (i < length) {
+            char c = referer.charAt(i);
+            if (c != '/' && c != '?' && c != '#' && c != ':') {
+                return -1;
+            }
+        }
+        return i;
+    }
+
+    private static boolean isAlpha(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isAlphaNumeric(char c) {
+        return isAlpha(c) || isDigit(c);
+    }
+
+    private static boolean isHex(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static boolean isSchemeChar(char c) {
+        return isAlphaNumeric(c) || c == '+' || c == '-' || c == '.';
+    }
+
+    /**
+     * RFC2396中path允许的未转义字符
+     */
+    private static boolean isPathChar(char c) {
+        return isAlphaNumeric(c) || "-_.!~*'()/:@&=+$,;".indexOf(c) >= 0;
+    }
+
+    private static boolean isQueryChar(char c) {
+        return isAlphaNumeric(c) || "-_.!~*'();/?:@&=+$,[]".indexOf(c) >= 0;
+    }
+
+    private static final class Entry {
+        private final String referer;
+        private final String page;
+
+        Entry(String referer, String page) {
+            this.referer = referer;
+            this.page = page;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package io.milkwang.framework.tracer;
+
+/**
+ * requestId的生成方式
+ *
+ * @author nethunder
+ */
+public enum RequestIdMode {
+    /**
+     * 32位字符串，14位时间+4位节点+14位随机字符，默认值
+     */
+    DEFAULT {
+        @Override
+        public String generate() {
+            return TraderCodeGenerator.generateRequestId();
+        }
+    },
+    /**
+     * 64位按时间递增的snowflake id，编码为11位base62
+     */
+    SNOWFLAKE_BASE62 {
+        @Override
+        public String generate() {
+            return SnowflakeIdGenerator.toBase62(SnowflakeIdGenerator.getDefault().nextId());
+        }
+    },
+    /**
+     * 64位按时间递增的snowflake id，编码为16位hex
+     */
+    SNOWFLAKE_HEX {
+        @Override
+        public String generate() {
+            return SnowflakeIdGenerator.toHex(SnowflakeIdGenerator.getDefault().nextId());
+        }
+    };
+
+    /**
+     * 生成一个新的requestId
+     */
+    public abstract String generate();
+}
@@ -0,0 +1,199 @@
+package io.milkwang.framework.tracer;
+
+import io.milkwang.util.common.IpUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按时间递增的64位id，结构与snowflake一致：
+ * <pre>
+ * 0 | 41位毫秒时间戳(从2020-01-01开始，可用约69年) | 10位节点 | 12位序列号
+ * </pre>
+ * <b><i>Note:</i></b>
+ * <ul>
+ *     <li>时间戳和序列号放在同一个AtomicLong中CAS更新，不加锁</li>
+ *     <li>同一毫秒内超过4096个时借用下一毫秒；时钟回拨时继续在上一个时间戳上递增，保证不重复、不阻塞</li>
+ *     <li>base62固定11位、hex固定16位，编码后的字符串顺序与数值顺序一致</li>
+ *     <li>默认节点号取系统属性milk.tracer.node，没有配置时取本机ip的低10位，在同一个/22网段内不重复；
+ *     同一台机器上运行多个进程、或者跨网段部署时必须配置milk.tracer.node</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+public class SnowflakeIdGenerator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnowflakeIdGenerator.class);
+    public static final String NODE_PROPERTY = "milk.tracer.node";
+    /**
+     * 2020-01-01 00:00:00 UTC
+     */
+    public static final long EPOCH = 1577836800000L;
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+
+    public static final int BASE62_LENGTH = 11;
+    public static final int HEX_LENGTH = 16;
+    private static final char[] BASE62_DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final byte[] BASE62_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(BASE62_VALUES, (byte) -1);
+        for (int i = 0; i < BASE62_DIGITS.length; i++) {
+            BASE62_VALUES[BASE62_DIGITS[i]] = (byte) i;
+        }
+    }
+
+    private static final SnowflakeIdGenerator DEFAULT = new SnowflakeIdGenerator(defaultNode());
+
+    private final long node;
+    /**
+     * 高位是相对EPOCH的时间戳，低12位是序列号
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    /**
+     * @param node 节点号，0~1023，同一时间运行的进程之间不能重复
+     */
+    public SnowflakeIdGenerator(int node) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("node must be between 0 and " + MAX_NODE + ": " + node);
+        }
+        this.node = node;
+    }
+
+    /**
+     * 默认的生成器，节点号取系统属性milk.tracer.node，没有配置时取本机ip的低10位
+     */
+    public static SnowflakeIdGenerator getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * 生成下一个id
+     */
+    public long nextId() {
+        long now = System.currentTimeMillis() - EPOCH;
+        long current;
+        long next;
+        do {
+            current = state.get();
+            next = (current >>> SEQUENCE_BITS) < now ? now << SEQUENCE_BITS : current + 1;
+        } while (!state.compareAndSet(current, next));
+        return ((next >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT) | (node << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+    }
+
+    /**
+     * id中的毫秒时间戳
+     */
+    public static long timestampOf(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH;
+    }
+
+    /**
+     * id中的节点号
+     */
+    public static int nodeOf(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_NODE);
+    }
+
+    /**
+     * 编码为固定11位的base62字符串
+     */
+    public static String toBase62(long id) {
+        char[] chars = new char[BASE62_LENGTH];
+        // id为正数，直接取模即可
+        for (int i = BASE62_LENGTH - 1; i >= 0; i--) {
+            chars[i] = BASE62_DIGITS[(int) (id % 62)];
+            id /= 62;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 解析toBase62生成的字符串
+     *
+     * @throws IllegalArgumentException 格式不正确
+     */
+    public static long fromBase62(CharSequence text) {
+        if (text.length() != BASE62_LENGTH) {
+            throw new IllegalArgumentException("invalid base62 id: " + text);
+        }
+        long id = 0;
+        for (int i = 0; i < BASE62_LENGTH; i++) {
+            char c = text.charAt(i);
+            int value = c < 128 ? BASE62_VALUES[c] : -1;
+            // 超出long范围同样视为格式错误
+            if (value < 0 || id > (Long.MAX_VALUE - value) / 62) {
+                throw new IllegalArgumentException("invalid base62 id: " + text);
+            }
+            id = id * 62 + value;
+        }
+        return id;
+    }
+
+    /**
+     * 编码为固定16位的小写hex字符串
+     */
+    public static String toHex(long id) {
+        char[] chars = new char[HEX_LENGTH];
+        for (int i = HEX_LENGTH - 1; i >= 0; i--) {
+            chars[i] = HEX_DIGITS[(int) (id & 0xF)];
+            id >>>= 4;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 解析toHex生成的字符串，大小写均可
+     *
+     * @throws IllegalArgumentException 格式不正确
+     */
+    public static long fromHex(CharSequence text) {
+        if (text.length() != HEX_LENGTH) {
+            throw new IllegalArgumentException("invalid hex id: " + text);
+        }
+        long id = 0;
+        for (int i = 0; i < HEX_LENGTH; i++) {
+            int value = Character.digit(text.charAt(i), 16);
+            if (value < 0) {
+                throw new IllegalArgumentException("invalid hex id: " + text);
+            }
+            id = (id << 4) | value;
+        }
+        return id;
+    }
+
+    private static int defaultNode() {
+        String configured = System.getProperty(NODE_PROPERTY);
+        if (configured != null) {
+            try {
+                int node = Integer.parseInt(configured.trim());
+                if (node >= 0 && node <= MAX_NODE) {
+                    return node;
+                }
+            } catch (NumberFormatException ignored) {
+                // 与超出范围一样处理
+            }
+            LOGGER.error("[[function=defaultNode]] invalid -D{}={}, must be an integer between 0 and {}, use host ip instead",
+                    NODE_PROPERTY, configured, MAX_NODE);
+        }
+        try {
+            // ipv4、ipv6的最后10位，同一个/22网段内的机器不重复
+            byte[] address = InetAddress.getByName(IpUtils.getHostIp()).getAddress();
+            return ((address[address.length - 2] & 0xFF) << 8 | (address[address.length - 1] & 0xFF)) & MAX_NODE;
+        } catch (Exception e) {
+            int node = ThreadLocalRandom.current().nextInt(MAX_NODE + 1);
+            LOGGER.error("[[function=defaultNode]] get host ip failed, use random node {}, configure -D{} instead",
+                    node, NODE_PROPERTY, e);
+            return node;
+        }
+    }
+}
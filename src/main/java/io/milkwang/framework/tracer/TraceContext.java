@@ -0,0 +1,203 @@
+package io.milkwang.framework.tracer;
+
+import org.slf4j.MDC;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * MDC中追踪信息的快照，用于把milkCode、requestId等带到其他线程
+ * <pre>
+ * TraceContext context = TraceContext.capture();
+ * executor.execute(context.wrap(() -> logger.info("仍然带有requestId")));
+ * CompletableFuture.supplyAsync(TraceContext.capture().wrap(() -> query()), executor);
+ * </pre>
+ * <b><i>Note:</i></b>
+ * <ul>
+ *     <li>快照不可变，可以在多个任务之间共享</li>
+ *     <li>任务执行前替换为快照中的MDC，执行后恢复线程原来的MDC，线程池中的线程不会残留上一个任务的信息</li>
+ *     <li>在当前线程直接执行(例如CallerRunsPolicy)时同样会恢复原来的MDC</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+public final class TraceContext {
+    /**
+     * 没有任何追踪信息的快照
+     */
+    public static final TraceContext EMPTY = new TraceContext(Collections.<String, String>emptyMap());
+
+    private final Map<String, String> values;
+
+    private TraceContext(Map<String, String> values) {
+        this.values = values;
+    }
+
+    /**
+     * 复制当前线程的MDC
+     */
+    public static TraceContext capture() {
+        Map<String, String> values = MDC.getCopyOfContextMap();
+        if (values == null || values.isEmpty()) {
+            return EMPTY;
+        }
+        return new TraceContext(Collections.unmodifiableMap(values));
+    }
+
+    /**
+     * 快照中的全部MDC值
+     */
+    public Map<String, String> getValues() {
+        return values;
+    }
+
+    public String get(String key) {
+        return values.get(key);
+    }
+
+    public String getMilkCode() {
+        return values.get(TracerUtils.MDC_KEY_MILK_CODE);
+    }
+
+    public String getRequestId() {
+        return values.get(TracerUtils.MDC_KEY_REQUEST_ID);
+    }
+
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    /**
+     * 把快照设置到当前线程，返回的Scope关闭时恢复原来的MDC
+     * <pre>
+     * TraceContext.Scope scope = context.attach();
+     * try {
+     *     ...
+     * } finally {
+     *     scope.close();
+     * }
+     * </pre>
+     */
+    public Scope attach() {
+        Map<String, String> previous = MDC.getCopyOfContextMap();
+        boolean previousEmpty = previous == null || previous.isEmpty();
+        // MDC与快照相同时不需要替换，但任务可能修改MDC，close时仍然要恢复
+        if (!(previousEmpty ? values.isEmpty() : values.equals(previous))) {
+            apply(values);
+        }
+        return new Scope(previousEmpty ? null : previous);
+    }
+
+    public Runnable wrap(Runnable runnable) {
+        if (runnable instanceof TracedTask) {
+            return runnable;
+        }
+        return new TracedRunnable(this, runnable);
+    }
+
+    public <V> Callable<V> wrap(Callable<V> callable) {
+        if (callable instanceof TracedTask) {
+            return callable;
+        }
+        return new TracedCallable<>(this, callable);
+    }
+
+    public <T> Supplier<T> wrap(Supplier<T> supplier) {
+        if (supplier instanceof TracedTask) {
+            return supplier;
+        }
+        return new TracedSupplier<>(this, supplier);
+    }
+
+    private static void apply(Map<String, String> values) {
+        if (values == null || values.isEmpty()) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(values);
+        }
+    }
+
+    /**
+     * attach的作用范围，close时恢复attach之前的MDC
+     */
+    public static class Scope implements AutoCloseable {
+        private final Map<String, String> previous;
+
+        private Scope(Map<String, String> previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            apply(previous);
+        }
+    }
+
+    /**
+     * 已经包装过的任务，避免重复包装
+     */
+    private interface TracedTask {
+    }
+
+    private static final class TracedRunnable implements Runnable, TracedTask {
+        private final TraceContext context;
+        private final Runnable delegate;
+
+        TracedRunnable(TraceContext context, Runnable delegate) {
+            this.context = context;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void run() {
+            Scope scope = context.attach();
+            try {
+                delegate.run();
+            } finally {
+                scope.close();
+            }
+        }
+    }
+
+    private static final class TracedCallable<V> implements Callable<V>, TracedTask {
+        private final TraceContext context;
+        private final Callable<V> delegate;
+
+        TracedCallable(TraceContext context, Callable<V> delegate) {
+            this.context = context;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public V call() throws Exception {
+            Scope scope = context.attach();
+            try {
+                return delegate.call();
+            } finally {
+                scope.close();
+            }
+        }
+    }
+
+    private static final class TracedSupplier<T> implements Supplier<T>, TracedTask {
+        private final TraceContext context;
+        private final Supplier<T> delegate;
+
+        TracedSupplier(TraceContext context, Supplier<T> delegate) {
+            this.context = context;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public T get() {
+            Scope scope = context.attach();
+            try {
+                return delegate.get();
+            } finally {
+                scope.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package io.milkwang.framework.tracer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 提交任务时自动带上当前线程追踪信息的线程池包装
+ * <pre>
+ * ExecutorService executor = TraceExecutors.wrap(Executors.newFixedThreadPool(8));
+ * executor.submit(() -> logger.info("仍然带有requestId"));
+ * CompletableFuture.supplyAsync(() -> query(), executor);
+ * </pre>
+ * 快照在提交任务的线程上获取，定时任务每次执行都使用提交时的快照
+ *
+ * @author nethunder
+ */
+public final class TraceExecutors {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TraceExecutors.class);
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    /**
+     * Java 21的Executors.newVirtualThreadPerTaskExecutor，低版本为null
+     */
+    private static final Method VIRTUAL_EXECUTOR_FACTORY = findVirtualExecutorFactory();
+
+    private TraceExecutors() {
+    }
+
+    public static Executor wrap(Executor executor) {
+        if (executor instanceof ExecutorService) {
+            return wrap((ExecutorService) executor);
+        }
+        if (executor instanceof TracingExecutor) {
+            return executor;
+        }
+        return new TracingExecutor(executor);
+    }
+
+    public static ExecutorService wrap(ExecutorService executor) {
+        if (executor instanceof ScheduledExecutorService) {
+            return wrap((ScheduledExecutorService) executor);
+        }
+        if (executor instanceof TracingExecutorService) {
+            return executor;
+        }
+        return new TracingExecutorService(executor);
+    }
+
+    public static ScheduledExecutorService wrap(ScheduledExecutorService executor) {
+        if (executor instanceof TracingScheduledExecutorService) {
+            return executor;
+        }
+        return new TracingScheduledExecutorService(executor);
+    }
+
+    /**
+     * 每个任务一个虚拟线程(Java 21及以上)，低版本退化为daemon线程的cachedThreadPool，返回的线程池已经带上追踪信息
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (VIRTUAL_EXECUTOR_FACTORY != null) {
+            try {
+                return wrap((ExecutorService) VIRTUAL_EXECUTOR_FACTORY.invoke(null));
+            } catch (Exception e) {
+                LOGGER.error(e.getLocalizedMessage(), e);
+            }
+        }
+        return wrap(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "trace-task-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * 当前运行环境是否支持虚拟线程
+     */
+    public static boolean isVirtualThreadSupported() {
+        return VIRTUAL_EXECUTOR_FACTORY != null;
+    }
+
+    /**
+     * 带追踪信息的CompletableFuture.supplyAsync
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+        return CompletableFuture.supplyAsync(TraceContext.capture().wrap(supplier), executor);
+    }
+
+    /**
+     * 带追踪信息的CompletableFuture.runAsync
+     */
+    public static CompletableFuture<Void> runAsync(Runnable runnable, Executor executor) {
+        return CompletableFuture.runAsync(TraceContext.capture().wrap(runnable), executor);
+    }
+
+    private static Method findVirtualExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static <T> List<Callable<T>> wrapAll(Collection<? extends Callable<T>> tasks) {
+        TraceContext context = TraceContext.capture();
+        List<Callable<T>> wrapped = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            wrapped.add(context.wrap(task));
+        }
+        return wrapped;
+    }
+
+    private static class TracingExecutor implements Executor {
+        private final Executor delegate;
+
+        TracingExecutor(Executor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(TraceContext.capture().wrap(command));
+        }
+    }
+
+    private static class TracingExecutorService implements ExecutorService {
+        private final ExecutorService delegate;
+
+        TracingExecutorService(ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(TraceContext.capture().wrap(command));
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+
+        @Override
+        public <T> Future<T> submit(Callable<T> task) {
+            return delegate.submit(TraceContext.capture().wrap(task));
+        }
+
+        @Override
+        public <T> Future<T> submit(Runnable task, T result) {
+            return delegate.submit(TraceContext.capture().wrap(task), result);
+        }
+
+        @Override
+        public Future<?> submit(Runnable task) {
+            return delegate.submit(TraceContext.capture().wrap(task));
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+            return delegate.invokeAll(wrapAll(tasks));
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+                throws InterruptedException {
+            return delegate.invokeAll(wrapAll(tasks), timeout, unit);
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+            return delegate.invokeAny(wrapAll(tasks));
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            return delegate.invokeAny(wrapAll(tasks), timeout, unit);
+        }
+    }
+
+    private static final class TracingScheduledExecutorService extends TracingExecutorService implements ScheduledExecutorService {
+        private final ScheduledExecutorService delegate;
+
+        TracingScheduledExecutorService(ScheduledExecutorService delegate) {
+            super(delegate);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            return delegate.schedule(TraceContext.capture().wrap(command), delay, unit);
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+            return delegate.schedule(TraceContext.capture().wrap(callable), delay, unit);
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+            return delegate.scheduleAtFixedRate(TraceContext.capture().wrap(command), initialDelay, period, unit);
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+            return delegate.scheduleWithFixedDelay(TraceContext.capture().wrap(command), initialDelay, delay, unit);
+        }
+    }
+}
@@ -4,11 +4,22 @@ import javax.servlet.*;
 import java.io.IOException;
 
 /**
- * 全局追踪的Filter，从Request中拿到code，存到MDC里，后续从这里拿到进行打点
+ * 全局追踪的Filter，从Request中拿到code，存到MDC里，后续从这里拿到进行打点<br/>
+ * init-param requestIdMode可以指定requestId的生成方式，取值见{@link RequestIdMode}
  */
 public class TracerFilter implements Filter {
+    public static final String PARAM_REQUEST_ID_MODE = "requestIdMode";
+
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
+        String mode = filterConfig.getInitParameter(PARAM_REQUEST_ID_MODE);
+        if (mode != null && mode.trim().length() > 0) {
+            try {
+                TracerUtils.setRequestIdMode(RequestIdMode.valueOf(mode.trim().toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                throw new ServletException("unknown requestIdMode: " + mode, e);
+            }
+        }
     }
 
     @Override
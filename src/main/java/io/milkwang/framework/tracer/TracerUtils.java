@@ -9,8 +9,11 @@ import org.slf4j.MDC;
 
 import javax.servlet.ServletRequest;
 import javax.servlet.http.HttpServletRequest;
-import java.net.URI;
+import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
 
 /**
  * 利用日志的MDC功能，提供统一线程内统一的日志前缀，方便追踪排障
@@ -22,6 +25,28 @@ public class TracerUtils {
     public static final String MDC_KEY_REFERER = "referer";
     public static final String MDC_KEY_IP = "ip";
     public static final String MDC_KEY_USERNAME = "username";
+    private static volatile RequestIdMode requestIdMode = RequestIdMode.DEFAULT;
+    /**
+     * 需要读取的请求头，前面是IpUtils.IP_HEADERS，下标与之一一对应
+     */
+    private static final String[] TRACE_HEADERS;
+    private static final int HEADER_REFERER;
+    private static final int HEADER_MILK_CODE;
+    private static final int HEADER_REQUEST_ID;
+    private static final int HEADER_USERNAME;
+
+    static {
+        List<String> headers = new ArrayList<>(IpUtils.IP_HEADERS);
+        HEADER_REFERER = headers.size();
+        headers.add(HttpHelper.REFERER_HEADER);
+        HEADER_MILK_CODE = headers.size();
+        headers.add(HttpHelper.MILK_CODE_HEADER);
+        HEADER_REQUEST_ID = headers.size();
+        headers.add(HttpHelper.MILK_REQUEST_ID_HEADER);
+        HEADER_USERNAME = headers.size();
+        headers.add(HttpHelper.MILK_USER_NAME);
+        TRACE_HEADERS = headers.toArray(new String[0]);
+    }
 
     /**
      * 设置MDC信息, 可以在每条日志中应用变量, 包含以下参数：<br/>
@@ -34,34 +59,88 @@ public class TracerUtils {
      * @param servletRequest 请求
      */
     public static void putMDCInfoFromRequest(ServletRequest servletRequest) {
-        try {
-            HttpServletRequest request = (HttpServletRequest) servletRequest;
-            String ip = IpUtils.getIpAddr(request);
-            String page = "";
-            String referer = request.getHeader(HttpHelper.REFERER_HEADER);
-            String milkCode = request.getHeader(HttpHelper.MILK_CODE_HEADER);
-            String requestId = request.getHeader(HttpHelper.MILK_REQUEST_ID_HEADER);
-            String username = request.getHeader(HttpHelper.MILK_USER_NAME);
-            if (requestId == null || requestId.length() == 0) {
-                requestId = TraderCodeGenerator.generateRequestId();
-            }
-            if (referer != null) {
-                URI url = URI.create(referer);
-                page = url.getScheme() + "://" + url.getHost() + url.getPath();
+        if (!(servletRequest instanceof HttpServletRequest)) {
+            return;
+        }
+        HttpServletRequest request = (HttpServletRequest) servletRequest;
+        String[] headers = readHeaders(request);
+        String ip = IpUtils.resolveIpAddr(headers);
+        if (ip == null) {
+            ip = request.getRemoteAddr();
+        }
+        String referer = headers[HEADER_REFERER];
+        String requestId = headers[HEADER_REQUEST_ID];
+        String username = headers[HEADER_USERNAME];
+        if (requestId == null || requestId.length() == 0) {
+            requestId = requestIdMode.generate();
+        }
+        // 添加MDC参数
+        MDC.put(MDC_KEY_IP, ip);
+        MDC.put(MDC_KEY_REFERER, referer == null ? "" : RefererPages.toPage(referer));
+        MDC.put(MDC_KEY_MILK_CODE, headers[HEADER_MILK_CODE]);
+        MDC.put(MDC_KEY_REQUEST_ID, requestId);
+        if (StringUtils.isNotEmpty(username)) {
+            MDC.put(MDC_KEY_USERNAME, decodeUsername(username));
+        }
+    }
+
+    /**
+     * 遍历一次请求头的名字，只对需要的请求头调用getHeader；容器不允许遍历时逐个读取
+     */
+    private static String[] readHeaders(HttpServletRequest request) {
+        String[] values = new String[TRACE_HEADERS.length];
+        Enumeration<String> names = request.getHeaderNames();
+        if (names == null) {
+            for (int i = 0; i < TRACE_HEADERS.length; i++) {
+                values[i] = request.getHeader(TRACE_HEADERS[i]);
             }
-            // 添加MDC参数
-            MDC.put(MDC_KEY_IP, ip);
-            MDC.put(MDC_KEY_REFERER, page);
-            MDC.put(MDC_KEY_MILK_CODE, milkCode);
-            MDC.put(MDC_KEY_REQUEST_ID, requestId);
-            if (StringUtils.isNotEmpty(username)) {
-                MDC.put(MDC_KEY_USERNAME, URLDecoder.decode(username, "utf-8"));
+            return values;
+        }
+        while (names.hasMoreElements()) {
+            String name = names.nextElement();
+            for (int i = 0; i < TRACE_HEADERS.length; i++) {
+                String header = TRACE_HEADERS[i];
+                if (values[i] == null && name.length() == header.length() && name.equalsIgnoreCase(header)) {
+                    values[i] = request.getHeader(name);
+                    break;
+                }
             }
-        } catch (Exception e) {
+        }
+        return values;
+    }
+
+    private static String decodeUsername(String username) {
+        if (username.indexOf('%') < 0 && username.indexOf('+') < 0) {
+            return username;
+        }
+        try {
+            return URLDecoder.decode(username, "utf-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
             LOGGER.error(e.getLocalizedMessage(), e);
+            return username;
         }
     }
 
+    /**
+     * 设置请求中没有带requestId时的生成方式，MDC、Result.traceId和向下游传递的requestId都使用这个格式
+     *
+     * @param mode 生成方式
+     */
+    public static void setRequestIdMode(RequestIdMode mode) {
+        requestIdMode = mode == null ? RequestIdMode.DEFAULT : mode;
+    }
+
+    public static RequestIdMode getRequestIdMode() {
+        return requestIdMode;
+    }
+
+    /**
+     * 按照当前的生成方式生成一个新的requestId
+     */
+    public static String generateRequestId() {
+        return requestIdMode.generate();
+    }
+
     public static void clear() {
         try {
             MDC.clear();
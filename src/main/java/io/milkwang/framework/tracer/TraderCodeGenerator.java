@@ -1,19 +1,114 @@
 package io.milkwang.framework.tracer;
 
 
-import io.milkwang.util.common.DateUtils;
-import io.milkwang.util.common.TextUtils;
+import io.milkwang.util.common.IpUtils;
 
-import java.util.Date;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * 生成追踪用的全局Code
  */
 public class TraderCodeGenerator {
+    private static final char[] DIGITS = "0123456789abcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final int REQUEST_ID_LENGTH = 32;
+    private static final int TIME_LENGTH = 14;
+    private static final int NODE_LENGTH = 4;
     /**
-     * 生成请求requestId，一共32位，14(时间)+18(随机字符)
+     * 36^7，一个long随机数可以产生7位36进制字符
+     */
+    private static final long RANDOM_BOUND = 78364164096L;
+    private static final int RANDOM_CHUNK = 7;
+    /**
+     * 当前节点的4位标识，由本机ip和进程号计算，区分不同机器、同一机器上的不同进程
+     */
+    private static final char[] NODE = nodeChars();
+
+    /**
+     * 最近一秒的时间前缀，每秒只格式化一次
+     */
+    private static volatile TimePrefix timePrefix = new TimePrefix(Long.MIN_VALUE, new char[TIME_LENGTH]);
+
+    /**
+     * 生成请求requestId，一共32位，14(时间yyyyMMddHHmmss)+4(节点)+14(随机字符)<br/>
+     * 字符范围与之前一致，都是数字和小写字母；不加锁，除了返回的String外只分配一个char[]
      */
     public static String generateRequestId() {
-        return DateUtils.format(new Date(), DateUtils.formatterNoSplitDateTime) + TextUtils.randomString(18);
+        char[] chars = new char[REQUEST_ID_LENGTH];
+        System.arraycopy(currentTimePrefix(), 0, chars, 0, TIME_LENGTH);
+        System.arraycopy(NODE, 0, chars, TIME_LENGTH, NODE_LENGTH);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int offset = TIME_LENGTH + NODE_LENGTH; offset < REQUEST_ID_LENGTH; offset += RANDOM_CHUNK) {
+            writeBase36(random.nextLong(RANDOM_BOUND), chars, offset, RANDOM_CHUNK);
+        }
+        return new String(chars);
+    }
+
+    private static char[] currentTimePrefix() {
+        long second = System.currentTimeMillis() / 1000;
+        TimePrefix prefix = timePrefix;
+        if (prefix.second != second) {
+            // 多个线程同时跨秒时各自计算一次，结果相同，不需要加锁
+            prefix = new TimePrefix(second, formatTime(second));
+            timePrefix = prefix;
+        }
+        return prefix.chars;
+    }
+
+    /**
+     * 按照本地时区格式化为yyyyMMddHHmmss
+     */
+    private static char[] formatTime(long second) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochSecond(second), ZoneId.systemDefault());
+        char[] chars = new char[TIME_LENGTH];
+        writeDecimal(time.getYear(), chars, 0, 4);
+        writeDecimal(time.getMonthValue(), chars, 4, 2);
+        writeDecimal(time.getDayOfMonth(), chars, 6, 2);
+        writeDecimal(time.getHour(), chars, 8, 2);
+        writeDecimal(time.getMinute(), chars, 10, 2);
+        writeDecimal(time.getSecond(), chars, 12, 2);
+        return chars;
+    }
+
+    private static void writeDecimal(int value, char[] chars, int offset, int length) {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            chars[i] = DIGITS[value % 10];
+            value /= 10;
+        }
+    }
+
+    private static void writeBase36(long value, char[] chars, int offset, int length) {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            chars[i] = DIGITS[(int) (value % 36)];
+            value /= 36;
+        }
+    }
+
+    private static char[] nodeChars() {
+        int node;
+        try {
+            // RuntimeMXBean的名字是"进程号@主机名"
+            String identity = IpUtils.getHostIp() + "/" + ManagementFactory.getRuntimeMXBean().getName();
+            node = identity.hashCode();
+        } catch (Exception e) {
+            // 取不到ip时随机选一个节点，只是降低了不同节点间的区分度
+            node = ThreadLocalRandom.current().nextInt();
+        }
+        char[] chars = new char[NODE_LENGTH];
+        writeBase36(Math.floorMod(node, 36 * 36 * 36 * 36), chars, 0, NODE_LENGTH);
+        return chars;
+    }
+
+    private static final class TimePrefix {
+        private final long second;
+        private final char[] chars;
+
+        TimePrefix(long second, char[] chars) {
+            this.second = second;
+            this.chars = chars;
+        }
     }
 }
@@ -9,6 +9,8 @@ import org.slf4j.LoggerFactory;
 import javax.servlet.http.HttpServletRequest;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 
@@ -21,6 +23,12 @@ import java.util.List;
 public class IpUtils {
     private static Logger log = LoggerFactory.getLogger(IpUtils.class);
 
+    /**
+     * 可能携带用户真实ip的请求头，按优先级排列
+     */
+    public static final List<String> IP_HEADERS = Collections.unmodifiableList(Arrays.asList(
+            "x-forwarded-for", "Proxy-Client-IP", "WL-Proxy-Client-IP", "HTTP_CLIENT_IP", "HTTP_X_FORWARDED_FOR", "X-Real-IP"));
+
     /**
      * 获取用户真实IP地址，不使用request.getRemoteAddr()的原因是有可能用户使用了代理软件方式避免真实IP地址,
      * 可是，如果通过了多级反向代理的话，X-Forwarded-For的值并不止一个，而是一串IP值
@@ -28,33 +36,40 @@ public class IpUtils {
      * @return ip
      */
     public static String getIpAddr(HttpServletRequest request) {
-        String ip = request.getHeader("x-forwarded-for");
-        if (ip != null && ip.length() != 0 && !"unknown".equalsIgnoreCase(ip)) {
-            // 多次反向代理后会有多个ip值，第一个ip才是真实ip
-            if (ip.contains(",")) {
-                ip = ip.split(",")[0];
-            }
-        }
-        if (ip == null || ip.length() == 0 || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getHeader("Proxy-Client-IP");
+        String ip = null;
+        for (int i = 0; i < IP_HEADERS.size() && !isKnownIp(ip); i++) {
+            ip = headerIp(i, request.getHeader(IP_HEADERS.get(i)));
         }
-        if (ip == null || ip.length() == 0 || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getHeader("WL-Proxy-Client-IP");
-        }
-        if (ip == null || ip.length() == 0 || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getHeader("HTTP_CLIENT_IP");
-        }
-        if (ip == null || ip.length() == 0 || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getHeader("HTTP_X_FORWARDED_FOR");
-        }
-        if (ip == null || ip.length() == 0 || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getHeader("X-Real-IP");
+        return isKnownIp(ip) ? ip : request.getRemoteAddr();
+    }
+
+    /**
+     * 根据已经读取的请求头计算用户真实ip，规则与getIpAddr(request)一致
+     *
+     * @param headerValues 与IP_HEADERS一一对应的请求头的值，可以为null
+     * @return 所有请求头都没有有效值时返回null，此时应使用request.getRemoteAddr()
+     */
+    public static String resolveIpAddr(String[] headerValues) {
+        String ip = null;
+        for (int i = 0; i < IP_HEADERS.size() && !isKnownIp(ip); i++) {
+            ip = headerIp(i, headerValues[i]);
         }
-        if (ip == null || ip.length() == 0 || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getRemoteAddr();
+        return isKnownIp(ip) ? ip : null;
+    }
+
+    private static String headerIp(int index, String value) {
+        // 多次反向代理后会有多个ip值，第一个ip才是真实ip
+        if (index == 0 && isKnownIp(value)) {
+            int comma = value.indexOf(',');
+            return comma < 0 ? value : value.substring(0, comma);
         }
-        return ip;
+        return value;
+    }
+
+    private static boolean isKnownIp(String ip) {
+        return ip != null && ip.length() != 0 && !"unknown".equalsIgnoreCase(ip);
     }
+
     /**
      * Need ignore other useless network's ip
      */
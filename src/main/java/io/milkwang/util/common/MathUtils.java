@@ -9,6 +9,14 @@ import java.util.Objects;
 
 public class MathUtils {
     public static DecimalFormat priceFormat;
+    /**
+     * 10的0~8次方，5^8只有19位有效数字，与任意double相乘的误差都可以精确算出
+     */
+    private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8};
+    /**
+     * Veltkamp拆分常量 2^27+1
+     */
+    private static final double SPLITTER = 134217729.0;
 
     static {
         priceFormat = new DecimalFormat("0.00");
@@ -166,4 +174,40 @@ public class MathUtils {
         }
         return true;
     }
+
+    /**
+     * 保留scale位小数并远离0舍入，结果与new BigDecimal(number).setScale(scale, ROUND_UP).doubleValue()完全一致，
+     * 但不会创建BigDecimal<br/>
+     * 通过Dekker算法精确求出number * 10^scale的舍入误差，只有超出精确范围时才退化为BigDecimal
+     *
+     * @param number 有限的浮点数
+     * @param scale  保留的小数位数，0~8
+     * @return 舍入后的值
+     */
+    public static double roundUp(double number, int scale) {
+        if (number == 0) {
+            return 0d;
+        }
+        double factor = POW10[scale];
+        double scaled = number * factor;
+        if (!(Math.abs(scaled) < 0x1p52)) {
+            return new BigDecimal(number).setScale(scale, BigDecimal.ROUND_UP).doubleValue();
+        }
+        // scaled + error 精确等于 number * factor
+        double split = SPLITTER * number;
+        double high = split - (split - number);
+        double low = number - high;
+        double error = (high * factor - scaled) + low * factor;
+        double rounded;
+        if (scaled == Math.rint(scaled)) {
+            if (number > 0) {
+                rounded = error > 0 ? scaled + 1 : scaled;
+            } else {
+                rounded = error < 0 ? scaled - 1 : scaled;
+            }
+        } else {
+            rounded = number > 0 ? Math.ceil(scaled) : Math.floor(scaled);
+        }
+        return rounded / factor;
+    }
 }
@@ -0,0 +1,262 @@
+package io.milkwang.util.excel;
+
+import io.milkwang.util.excel.writer.WorkbookWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 一次异步导出，可以查询进度，完成后通过getFuture()拿到生成的文件
+ * <ul>
+ *     <li>进度按照实际写入workbook的行数统计，不包含表头</li>
+ *     <li>sheet超出最大行数续写时，每个续写的sheet都单独计入sheetsDone</li>
+ *     <li>cancel后在写入下一行时中断，已生成的文件会被删除；已经写完最后一行时同样以CANCELLED结束</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+public class ExcelExportJob {
+    private final String id;
+    private final String name;
+    private final File file;
+    private final long createTime;
+    private final CompletableFuture<File> future = new CompletableFuture<>();
+    private volatile State state = State.WAITING;
+    private volatile long rowsWritten;
+    private volatile int sheetsDone;
+    private volatile long startTime;
+    private volatile long finishTime;
+    private volatile boolean cancelled;
+
+    ExcelExportJob(String id, String name, File file) {
+        this.id = id;
+        this.name = name;
+        this.file = file;
+        this.createTime = System.currentTimeMillis();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 导出的目标文件，只有状态为SUCCESS时才完整
+     */
+    public File getFile() {
+        return file;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * 已写入的数据行数
+     */
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /**
+     * 已写完的sheet数
+     */
+    public int getSheetsDone() {
+        return sheetsDone;
+    }
+
+    public long getCreateTime() {
+        return createTime;
+    }
+
+    /**
+     * 开始执行的时间，尚未开始时为0
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * 结束的时间，尚未结束时为0
+     */
+    public long getFinishTime() {
+        return finishTime;
+    }
+
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    /**
+     * 导出完成的回调，成功时返回生成的文件，失败或取消时异常结束
+     */
+    public CompletableFuture<File> getFuture() {
+        return future;
+    }
+
+    /**
+     * 取消导出，排队中的任务不会再执行，执行中的任务在写入下一行时停止
+     *
+     * @return 任务已经结束时返回false；返回true时任务一定以CANCELLED结束，文件会被删除
+     */
+    public boolean cancel() {
+        boolean waiting;
+        synchronized (this) {
+            if (state != State.WAITING && state != State.RUNNING) {
+                return false;
+            }
+            cancelled = true;
+            waiting = state == State.WAITING;
+        }
+        if (waiting) {
+            finish(State.CANCELLED, new CancellationException("excel export cancelled: " + id));
+        }
+        return true;
+    }
+
+    /**
+     * 在导出线程中执行，返回false表示任务已经被取消
+     */
+    boolean start() {
+        synchronized (this) {
+            if (cancelled || future.isDone()) {
+                return false;
+            }
+            startTime = System.currentTimeMillis();
+            state = State.RUNNING;
+        }
+        return true;
+    }
+
+    /**
+     * 在导出线程中执行，返回false表示写完之前已经被取消，由调用方删除文件后调用fail结束
+     */
+    boolean complete() {
+        synchronized (this) {
+            if (cancelled) {
+                return false;
+            }
+            finishTime = System.currentTimeMillis();
+            state = State.SUCCESS;
+        }
+        future.complete(file);
+        return true;
+    }
+
+    void fail(Throwable e) {
+        if (cancelled) {
+            finish(State.CANCELLED, new CancellationException("excel export cancelled: " + id));
+        } else {
+            finish(State.FAILED, e);
+        }
+    }
+
+    private void finish(State finalState, Throwable e) {
+        synchronized (this) {
+            if (future.isDone()) {
+                return;
+            }
+            finishTime = System.currentTimeMillis();
+            state = finalState;
+        }
+        future.completeExceptionally(e);
+    }
+
+    /**
+     * 包装真正的写入器，统计进度并响应取消
+     */
+    WorkbookWriter track(WorkbookWriter writer) {
+        return new ProgressWriter(writer);
+    }
+
+    /**
+     * 导出状态
+     */
+    public enum State {
+        /**
+         * 排队中
+         */
+        WAITING,
+        /**
+         * 导出中
+         */
+        RUNNING,
+        /**
+         * 导出成功
+         */
+        SUCCESS,
+        /**
+         * 导出失败
+         */
+        FAILED,
+        /**
+         * 已取消
+         */
+        CANCELLED
+    }
+
+    private final class ProgressWriter implements WorkbookWriter {
+        private final WorkbookWriter writer;
+        private boolean header;
+
+        ProgressWriter(WorkbookWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public int maxRowsPerSheet() {
+            return writer.maxRowsPerSheet();
+        }
+
+        @Override
+        public void startSheet(String name) throws IOException {
+            header = true;
+            writer.startSheet(name);
+        }
+
+        @Override
+        public void startRow() throws IOException {
+            if (cancelled) {
+                throw new CancellationException("excel export cancelled: " + id);
+            }
+            writer.startRow();
+        }
+
+        @Override
+        public void writeLabel(int col, String text) throws IOException {
+            writer.writeLabel(col, text);
+        }
+
+        @Override
+        public void writeNumber(int col, double number) throws IOException {
+            writer.writeNumber(col, number);
+        }
+
+        @Override
+        public void endRow() throws IOException {
+            writer.endRow();
+            if (header) {
+                header = false;
+            } else {
+                // 只有导出线程写入，volatile保证其他线程可见
+                rowsWritten++;
+            }
+        }
+
+        @Override
+        public void endSheet() throws IOException {
+            writer.endSheet();
+            sheetsDone++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package io.milkwang.util.excel;
+
+import io.milkwang.util.common.TextUtils;
+import io.milkwang.util.excel.entity.Excel;
+import io.milkwang.util.excel.helper.ExcelFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 异步导出Excel，导出在独立的有界线程池中执行，不会占用web容器的请求线程
+ * <pre>
+ * ExcelExportJob job = exportService.submit("订单", ExcelFormat.XLSX,
+ *         writer -> writer.writeSheet("订单", orderMapper.streamByMonth(month)));
+ * return job.getId();
+ * ...
+ * ExcelExportJob job = exportService.getJob(id);
+ * job.getState(); job.getRowsWritten(); job.getSheetsDone();
+ * </pre>
+ * <b><i>Note:</i></b>
+ * <ul>
+ *     <li>同时执行的导出数不超过maxConcurrent，排队数超过queueCapacity时submit抛出RejectedExecutionException</li>
+ *     <li>导出文件写到目录下的"任务id/文件名"中，失败或取消时删除；文件名中的路径分隔符等替换为_</li>
+ *     <li>结束超过retentionMillis的任务在下一次submit时从getJob中移除，同时删除导出文件，需要长期保存时在过期前转存</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+public class ExcelExportService implements Closeable {
+    private static Logger logger = LoggerFactory.getLogger(ExcelExportService.class);
+    private static final AtomicInteger SERVICE_COUNTER = new AtomicInteger();
+    private static final long DEFAULT_RETENTION_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final File directory;
+    private final long retentionMillis;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, ExcelExportJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * 导出到/data/temp，最多同时执行CPU核数一半的导出，最多排队32个
+     */
+    public ExcelExportService() {
+        this(new File("/data/temp"), Math.max(1, Runtime.getRuntime().availableProcessors() / 2), 32);
+    }
+
+    /**
+     * @param directory     导出文件存放的目录
+     * @param maxConcurrent 同时执行的最大导出数
+     * @param queueCapacity 最多排队的导出数
+     */
+    public ExcelExportService(File directory, int maxConcurrent, int queueCapacity) {
+        this(directory, maxConcurrent, queueCapacity, DEFAULT_RETENTION_MILLIS);
+    }
+
+    /**
+     * @param directory       导出文件存放的目录
+     * @param maxConcurrent   同时执行的最大导出数
+     * @param queueCapacity   最多排队的导出数
+     * @param retentionMillis 任务结束后保留多久，之后无法再通过getJob查询
+     */
+    public ExcelExportService(File directory, int maxConcurrent, int queueCapacity, long retentionMillis) {
+        this.directory = directory;
+        this.retentionMillis = retentionMillis;
+        int serviceId = SERVICE_COUNTER.incrementAndGet();
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "excel-export-" + serviceId + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 提交一个流式导出，数据在导出线程中边查询边写入
+     *
+     * @param name   文件名，不带后缀，不能包含路径
+     * @param format 输出格式
+     * @param task   导出内容
+     * @return 导出任务
+     * @throws RejectedExecutionException 排队的导出已满
+     */
+    public ExcelExportJob submit(String name, ExcelFormat format, ExcelExportTask task) {
+        evictExpiredJobs();
+        String id = TextUtils.randomString(16);
+        String fileName = sanitizeFileName(name) + format.getExtension();
+        ExcelExportJob job = new ExcelExportJob(id, name, new File(new File(directory, id), fileName));
+        jobs.put(id, job);
+        try {
+            executor.execute(() -> run(job, format, task));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(id);
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * 提交一个使用ExcelBuilder构建的导出，supplier在导出线程中执行，数据查询也不会占用请求线程
+     *
+     * @param name          文件名，不带后缀
+     * @param format        输出格式
+     * @param excelSupplier 构建excel，例如 () -> ExcelUtils.builder().addSheet("订单", orderMapper.list()).build()
+     * @return 导出任务
+     * @throws RejectedExecutionException 排队的导出已满
+     */
+    public ExcelExportJob submit(String name, ExcelFormat format, Supplier<Excel> excelSupplier) {
+        return submit(name, format, (ExcelStreamWriter writer) -> writer.writeExcel(excelSupplier.get()));
+    }
+
+    /**
+     * 查询导出任务
+     *
+     * @param id 任务id
+     * @return 不存在或者已过期时返回null
+     */
+    public ExcelExportJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * 所有未过期的任务
+     */
+    public Collection<ExcelExportJob> getJobs() {
+        return Collections.unmodifiableCollection(jobs.values());
+    }
+
+    /**
+     * 正在执行的导出数
+     */
+    public int getRunningCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * 排队中的导出数
+     */
+    public int getWaitingCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * 不再接受新的导出，已提交的导出会继续执行完
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private void run(ExcelExportJob job, ExcelFormat format, ExcelExportTask task) {
+        if (!job.start()) {
+            return;
+        }
+        File file = job.getFile();
+        try {
+            File parent = file.getParentFile();
+            if (!parent.exists() && !parent.mkdirs()) {
+                throw new IOException("创建导出文件夹失败:" + parent.getAbsolutePath());
+            }
+            try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file));
+                 ExcelStreamWriter writer = ExcelStreamWriter.create(job.track(format.newWriter(outputStream)))) {
+                task.export(writer);
+            }
+            if (!job.complete()) {
+                throw new CancellationException("excel export cancelled: " + job.getId());
+            }
+            logger.info("excel导出完成:{}, rows:{}, cost:{}ms", file.getAbsolutePath(), job.getRowsWritten(),
+                    job.getFinishTime() - job.getStartTime());
+        } catch (Throwable e) {
+            deleteQuietly(file);
+            job.fail(e);
+            if (job.getState() == ExcelExportJob.State.FAILED) {
+                logger.error(e.getLocalizedMessage(), e);
+            }
+        }
+    }
+
+    private void evictExpiredJobs() {
+        long deadline = System.currentTimeMillis() - retentionMillis;
+        for (ExcelExportJob job : jobs.values()) {
+            // 并发submit时只由移除成功的一方删除文件
+            if (job.isDone() && job.getFinishTime() < deadline && jobs.remove(job.getId(), job)) {
+                deleteQuietly(job.getFile());
+            }
+        }
+    }
+
+    /**
+     * 去掉路径分隔符和文件名中不允许的字符，文件只能写在任务自己的目录中
+     */
+    private static String sanitizeFileName(String name) {
+        if (name == null) {
+            return TextUtils.randomString(8);
+        }
+        String sanitized = name.replaceAll("[\\\\/:*?\"<>|\\x00-\\x1F]", "_").trim();
+        return sanitized.isEmpty() || ".".equals(sanitized) || "..".equals(sanitized) ? TextUtils.randomString(8) : sanitized;
+    }
+
+    private static void deleteQuietly(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+            Files.deleteIfExists(file.getParentFile().toPath());
+        } catch (IOException e) {
+            logger.error(e.getLocalizedMessage(), e);
+        }
+    }
+}
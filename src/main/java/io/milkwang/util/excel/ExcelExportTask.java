@@ -0,0 +1,21 @@
+package io.milkwang.util.excel;
+
+import java.io.IOException;
+
+/**
+ * 异步导出的内容，在导出线程中执行，通过writer逐个sheet写入数据
+ * <pre>
+ * writer -> writer.writeSheet("订单", orderMapper.streamByMonth(month))
+ * </pre>
+ *
+ * @author nethunder
+ */
+@FunctionalInterface
+public interface ExcelExportTask {
+    /**
+     * 写入所有sheet，不需要关闭writer
+     *
+     * @param writer 输出到导出文件的writer
+     */
+    void export(ExcelStreamWriter writer) throws IOException;
+}
@@ -0,0 +1,354 @@
+package io.milkwang.util.excel;
+
+
+import io.milkwang.util.common.DateUtils;
+import io.milkwang.util.excel.helper.AtomType;
+import io.milkwang.util.excel.helper.ExcelFormat;
+import io.milkwang.util.excel.helper.JxlAtom;
+import io.milkwang.util.excel.helper.JxlAtomSchema;
+import io.milkwang.util.excel.reader.WorkbookReader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TimeZone;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 读取Excel，并按照{@link JxlAtom}注解将每一行绑定为对象，与ExcelBuilder的导出规则对称
+ * <pre>
+ * try (ExcelReader reader = ExcelReader.create(file)) {
+ *     reader.read(Order.class, 500, orderMapper::batchInsert);
+ * }
+ * </pre>
+ * <b><i>Note:</i></b>
+ * <ul>
+ *     <li>默认第一行是表头，按照表头文字与JxlAtom.name匹配列；表头一个都匹配不上时按照order的顺序对应列</li>
+ *     <li>xlsx逐行解析，内存占用与行数无关；xls由jxl读取，整个文件会先读入内存</li>
+ *     <li>完全为空的行会被跳过</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+public class ExcelReader implements Closeable {
+    /**
+     * Excel日期序列号的起点1899-12-30与1970-01-01相差的天数
+     */
+    private static final int EXCEL_EPOCH_OFFSET_DAYS = 25569;
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    private final WorkbookReader reader;
+    private int sheetIndex;
+    private String sheetName;
+    private int headerRows = 1;
+
+    private ExcelReader(WorkbookReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * 读取文件，根据文件后缀决定按照xls还是xlsx解析
+     *
+     * @param file 源文件
+     */
+    public static ExcelReader create(File file) throws IOException {
+        return create(file, ExcelFormat.fromFileName(file.getName()));
+    }
+
+    /**
+     * 按照指定格式读取文件
+     *
+     * @param file   源文件
+     * @param format 文件格式
+     */
+    public static ExcelReader create(File file, ExcelFormat format) throws IOException {
+        return new ExcelReader(format.newReader(file));
+    }
+
+    /**
+     * 按照指定格式读取流，例如上传的MultipartFile.getInputStream()，不会关闭这个流
+     *
+     * @param inputStream 源数据
+     * @param format      文件格式
+     */
+    public static ExcelReader create(InputStream inputStream, ExcelFormat format) throws IOException {
+        return new ExcelReader(format.newReader(inputStream));
+    }
+
+    /**
+     * 读取第几个sheet，默认第一个
+     *
+     * @param index sheet下标，从0开始
+     */
+    public ExcelReader sheet(int index) {
+        this.sheetIndex = index;
+        this.sheetName = null;
+        return this;
+    }
+
+    /**
+     * 按名字指定读取的sheet
+     *
+     * @param name sheet名字
+     */
+    public ExcelReader sheet(String name) {
+        this.sheetName = name;
+        return this;
+    }
+
+    /**
+     * 表头占几行，默认1行，最后一行表头用来匹配列；为0时按照order的顺序对应列
+     *
+     * @param headerRows 表头行数
+     */
+    public ExcelReader headerRows(int headerRows) {
+        this.headerRows = headerRows;
+        return this;
+    }
+
+    /**
+     * 逐行读取并绑定为对象，整个sheet不会一次性读入内存
+     *
+     * @param clazz 带有JxlAtom注解的类，需要有无参构造函数
+     * @return 对象流，只能遍历一次
+     */
+    public <T> Stream<T> stream(Class<T> clazz) throws IOException {
+        JxlAtomSchema schema = JxlAtomSchema.of(clazz);
+        if (schema.isEmpty()) {
+            throw new IllegalArgumentException(clazz.getName() + " has no field annotated with JxlAtom");
+        }
+        Iterator<Object[]> rows = reader.rows(resolveSheetIndex());
+        int[] mapping = null;
+        int rowNumber = 0;
+        for (int i = 0; i < headerRows && rows.hasNext(); i++) {
+            mapping = mapColumns(schema, rows.next());
+            rowNumber++;
+        }
+        if (mapping == null) {
+            mapping = positionalMapping(schema.size());
+        }
+        BindingIterator<T> iterator = new BindingIterator<>(clazz, schema, mapping, rows, rowNumber);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * 按批读取，适合直接批量写入数据库
+     *
+     * @param clazz     带有JxlAtom注解的类
+     * @param batchSize 每批的数量
+     * @param consumer  每一批数据的处理
+     */
+    public <T> void read(Class<T> clazz, int batchSize, Consumer<List<T>> consumer) throws IOException {
+        List<T> batch = new ArrayList<>(batchSize);
+        Iterator<T> iterator = stream(clazz).iterator();
+        while (iterator.hasNext()) {
+            batch.add(iterator.next());
+            if (batch.size() >= batchSize) {
+                consumer.accept(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            consumer.accept(batch);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private int resolveSheetIndex() throws IOException {
+        if (sheetName == null) {
+            return sheetIndex;
+        }
+        int index = reader.getSheetNames().indexOf(sheetName);
+        if (index < 0) {
+            throw new IOException("sheet not found: " + sheetName);
+        }
+        return index;
+    }
+
+    /**
+     * 根据表头计算每一列对应schema中的第几个字段，-1表示忽略这一列
+     */
+    private static int[] mapColumns(JxlAtomSchema schema, Object[] header) {
+        List<String> titles = schema.getTitles();
+        int[] mapping = new int[header.length];
+        boolean matched = false;
+        for (int i = 0; i < header.length; i++) {
+            mapping[i] = header[i] == null ? -1 : titles.indexOf(header[i].toString().trim());
+            matched |= mapping[i] >= 0;
+        }
+        return matched ? mapping : positionalMapping(schema.size());
+    }
+
+    private static int[] positionalMapping(int size) {
+        int[] mapping = new int[size];
+        for (int i = 0; i < size; i++) {
+            mapping[i] = i;
+        }
+        return mapping;
+    }
+
+    /**
+     * 将单元格的值转换为字段类型，整数字段的值有小数或超出范围时抛出ArithmeticException，不会截断
+     *
+     * @param value  单元格的值，String、Double、Boolean或Date
+     * @param target 字段类型
+     * @param type   JxlAtom中声明的原始类型
+     * @return 转换后的值
+     */
+    static Object convert(Object value, Class<?> target, AtomType type) {
+        Class<?> boxed = target.isPrimitive() ? wrap(target) : target;
+        if (boxed.isInstance(value)) {
+            return value;
+        }
+        if (boxed == String.class) {
+            return toText(value);
+        }
+        if (Number.class.isAssignableFrom(boxed)) {
+            String text = toText(value).trim().replace(",", "");
+            if (text.isEmpty()) {
+                return null;
+            }
+            BigDecimal decimal = new BigDecimal(text);
+            if (boxed == Integer.class) {
+                return decimal.intValueExact();
+            } else if (boxed == Long.class) {
+                return decimal.longValueExact();
+            } else if (boxed == Double.class) {
+                return decimal.doubleValue();
+            } else if (boxed == Float.class) {
+                return decimal.floatValue();
+            } else if (boxed == Short.class) {
+                return decimal.shortValueExact();
+            } else if (boxed == Byte.class) {
+                return decimal.byteValueExact();
+            } else if (boxed == BigDecimal.class) {
+                return decimal;
+            } else if (boxed == BigInteger.class) {
+                return decimal.toBigIntegerExact();
+            }
+        } else if (boxed == Date.class) {
+            if (value instanceof Double) {
+                return fromExcelSerial((Double) value);
+            }
+            String text = value.toString().trim();
+            if (text.isEmpty()) {
+                return null;
+            }
+            return type == AtomType.DATE || text.length() <= 10
+                    ? DateUtils.parseStringToDate(text) : DateUtils.parseStringToDateTime(text);
+        } else if (boxed == Boolean.class) {
+            String text = toText(value).trim();
+            return "true".equalsIgnoreCase(text) || "1".equals(text) || "是".equals(text);
+        }
+        throw new IllegalArgumentException("unsupported field type " + target.getName());
+    }
+
+    private static String toText(Object value) {
+        if (value instanceof Double) {
+            double number = (Double) value;
+            long integral = (long) number;
+            return integral == number ? Long.toString(integral) : BigDecimal.valueOf(number).toPlainString();
+        } else if (value instanceof Date) {
+            return DateUtils.parseDateTimeToString((Date) value);
+        }
+        return value.toString();
+    }
+
+    /**
+     * Excel中的日期是从1899-12-30开始的天数，按照本地时区还原
+     */
+    private static Date fromExcelSerial(double serial) {
+        long utcMillis = Math.round((serial - EXCEL_EPOCH_OFFSET_DAYS) * MILLIS_PER_DAY);
+        return new Date(utcMillis - TimeZone.getDefault().getOffset(utcMillis));
+    }
+
+    private static Class<?> wrap(Class<?> primitive) {
+        return MethodType.methodType(primitive).wrap().returnType();
+    }
+
+    /**
+     * 每次从底层读取一行并绑定为对象
+     */
+    private static final class BindingIterator<T> implements Iterator<T> {
+        private final Class<T> clazz;
+        private final JxlAtomSchema schema;
+        private final int[] mapping;
+        private final Iterator<Object[]> rows;
+        private final List<Field> fields;
+        private int rowNumber;
+        private T next;
+
+        BindingIterator(Class<T> clazz, JxlAtomSchema schema, int[] mapping, Iterator<Object[]> rows, int rowNumber) {
+            this.clazz = clazz;
+            this.schema = schema;
+            this.mapping = mapping;
+            this.rows = rows;
+            this.rowNumber = rowNumber;
+            this.fields = schema.getFields();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && rows.hasNext()) {
+                Object[] row = rows.next();
+                rowNumber++;
+                if (Arrays.stream(row).allMatch(value -> value == null)) {
+                    continue;
+                }
+                next = bind(row);
+            }
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T row = next;
+            next = null;
+            return row;
+        }
+
+        private T bind(Object[] row) {
+            T target = clazz.cast(schema.newInstance());
+            for (int col = 0; col < row.length && col < mapping.length; col++) {
+                int index = mapping[col];
+                if (index < 0 || row[col] == null) {
+                    continue;
+                }
+                Field field = fields.get(index);
+                Object value;
+                try {
+                    value = convert(row[col], field.getType(), schema.getType(index));
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException("第" + rowNumber + "行第" + (col + 1) + "列[" + schema.getTitles().get(index)
+                            + "]的值\"" + row[col] + "\"无法转换为" + field.getType().getSimpleName(), e);
+                }
+                if (value != null) {
+                    schema.setValue(target, index, value);
+                }
+            }
+            return target;
+        }
+    }
+}
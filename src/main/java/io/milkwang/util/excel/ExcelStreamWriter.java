@@ -0,0 +1,295 @@
+package io.milkwang.util.excel;
+
+
+import com.google.common.collect.Lists;
+import io.milkwang.util.excel.entity.Excel;
+import io.milkwang.util.excel.helper.AtomType;
+import io.milkwang.util.excel.helper.ExcelFormat;
+import io.milkwang.util.excel.helper.JxlAtom;
+import io.milkwang.util.excel.helper.JxlAtomSchema;
+import io.milkwang.util.excel.writer.WorkbookWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 流式输出Excel，每一行数据到达后直接写入workbook，不会再构建Excel/ExcelSheet/Row/Col对象
+ * <pre>
+ * try (ExcelStreamWriter writer = ExcelStreamWriter.create(outputStream, ExcelFormat.XLSX)) {
+ *     writer.writeSheet("订单", orderIterator);
+ *     writer.writeSheet("退款", refundStream);
+ * }
+ * </pre>
+ * <b><i>Note:</i></b>
+ * <ul>
+ *     <li>行数据支持带有{@link JxlAtom}注解的对象或者LinkedHashMap，规则与ExcelBuilder.addSheet一致</li>
+ *     <li>sheet按照写入的顺序输出，不会像saveExcelFile一样按名字排序</li>
+ *     <li>单个sheet超出格式的最大行数后，自动续写到"名字_2"这样的新sheet中</li>
+ *     <li>xls格式下jxl会保留所有单元格直到close；xlsx格式边写边输出，内存占用与行数无关</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+public class ExcelStreamWriter implements Closeable {
+    private final WorkbookWriter writer;
+    private final OutputStream ownedStream;
+    private boolean closed;
+
+    private ExcelStreamWriter(WorkbookWriter writer, OutputStream ownedStream) {
+        this.writer = writer;
+        this.ownedStream = ownedStream;
+    }
+
+    /**
+     * 输出到文件，根据文件后缀决定输出xls还是xlsx
+     *
+     * @param file 目标文件
+     */
+    public static ExcelStreamWriter create(File file) throws IOException {
+        return create(file, ExcelFormat.fromFileName(file.getName()));
+    }
+
+    /**
+     * 按照指定格式输出到文件
+     *
+     * @param file   目标文件
+     * @param format 输出格式
+     */
+    public static ExcelStreamWriter create(File file, ExcelFormat format) throws IOException {
+        OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            return new ExcelStreamWriter(format.newWriter(outputStream), outputStream);
+        } catch (IOException e) {
+            outputStream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 输出xls到流，关闭writer时不会关闭这个流
+     *
+     * @param outputStream 目标流
+     */
+    public static ExcelStreamWriter create(OutputStream outputStream) throws IOException {
+        return create(outputStream, ExcelFormat.XLS);
+    }
+
+    /**
+     * 按照指定格式输出到流，关闭writer时不会关闭这个流
+     *
+     * @param outputStream 目标流
+     * @param format       输出格式
+     */
+    public static ExcelStreamWriter create(OutputStream outputStream, ExcelFormat format) throws IOException {
+        return new ExcelStreamWriter(format.newWriter(outputStream), null);
+    }
+
+    /**
+     * 直接写入底层写入器，关闭时会关闭这个写入器
+     */
+    static ExcelStreamWriter create(WorkbookWriter writer) {
+        return new ExcelStreamWriter(writer, null);
+    }
+
+    /**
+     * 写入一个sheet
+     *
+     * @param name sheet名字
+     * @param rows 行数据
+     */
+    public ExcelStreamWriter writeSheet(String name, Iterable<?> rows) throws IOException {
+        return writeSheet(name, null, rows.iterator());
+    }
+
+    /**
+     * 写入一个sheet，不会关闭传入的stream
+     *
+     * @param name sheet名字
+     * @param rows 行数据
+     */
+    public ExcelStreamWriter writeSheet(String name, Stream<?> rows) throws IOException {
+        return writeSheet(name, null, rows.iterator());
+    }
+
+    /**
+     * 写入一个sheet
+     *
+     * @param name sheet名字
+     * @param rows 行数据
+     */
+    public ExcelStreamWriter writeSheet(String name, Iterator<?> rows) throws IOException {
+        return writeSheet(name, null, rows);
+    }
+
+    /**
+     * 写入一个sheet
+     *
+     * @param name   sheet名字
+     * @param titles 表头，为null时根据第一行数据生成
+     * @param rows   行数据
+     */
+    public ExcelStreamWriter writeSheet(String name, List<String> titles, Iterator<?> rows) throws IOException {
+        if (closed) {
+            throw new IOException("excel writer already closed");
+        }
+        RowReader reader = null;
+        SheetCursor cursor = null;
+        while (rows.hasNext()) {
+            Object row = rows.next();
+            if (row == null) {
+                continue;
+            }
+            if (reader == null) {
+                reader = RowReader.of(row);
+                cursor = new SheetCursor(name, titles != null ? titles : reader.titles(row));
+            }
+            cursor.nextRow();
+            reader.write(cursor, row);
+            writer.endRow();
+        }
+        if (cursor == null) {
+            // 没有数据也输出一个只有表头的sheet
+            new SheetCursor(name, titles != null ? titles : Lists.newArrayList());
+        }
+        writer.endSheet();
+        return this;
+    }
+
+    /**
+     * 写入ExcelBuilder构建好的所有sheet，与ExcelUtils.writeExcel一样按名字排序并行渲染
+     *
+     * @param excel excel数据
+     */
+    public ExcelStreamWriter writeExcel(Excel excel) throws IOException {
+        if (closed) {
+            throw new IOException("excel writer already closed");
+        }
+        ExcelUtils.writeExcel(excel, writer, ExcelUtils.RENDER_POOL);
+        return this;
+    }
+
+    /**
+     * 输出workbook并释放资源
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writer.close();
+        } finally {
+            if (ownedStream != null) {
+                ownedStream.close();
+            }
+        }
+    }
+
+    /**
+     * 当前正在写入的sheet，写满后自动续写到新sheet
+     */
+    private final class SheetCursor {
+        private final String name;
+        private final List<String> titles;
+        private int part;
+        private int rowCount;
+
+        SheetCursor(String name, List<String> titles) throws IOException {
+            this.name = name;
+            this.titles = titles;
+            this.newSheet();
+        }
+
+        void nextRow() throws IOException {
+            if (rowCount >= writer.maxRowsPerSheet()) {
+                writer.endSheet();
+                this.newSheet();
+            }
+            rowCount++;
+            writer.startRow();
+        }
+
+        void addCell(int col, AtomType type, Object value) throws IOException {
+            ExcelUtils.writeCell(writer, col, type, value);
+        }
+
+        void addNumber(int col, double number) throws IOException {
+            ExcelUtils.writeNumber(writer, col, number);
+        }
+
+        private void newSheet() throws IOException {
+            part++;
+            writer.startSheet(part == 1 ? name : name + "_" + part);
+            writer.startRow();
+            for (int i = 0; i < titles.size(); i++) {
+                writer.writeLabel(i, titles.get(i));
+            }
+            writer.endRow();
+            rowCount = 1;
+        }
+    }
+
+    /**
+     * 根据第一行数据确定的读取方式，整个sheet只解析一次
+     */
+    private abstract static class RowReader {
+        static RowReader of(Object row) {
+            JxlAtomSchema schema = JxlAtomSchema.of(row.getClass());
+            return schema.isEmpty() ? new MapRowReader() : new AtomRowReader(schema);
+        }
+
+        abstract List<String> titles(Object first);
+
+        abstract void write(SheetCursor cursor, Object row) throws IOException;
+    }
+
+    private static class AtomRowReader extends RowReader {
+        private final JxlAtomSchema schema;
+
+        AtomRowReader(JxlAtomSchema schema) {
+            this.schema = schema;
+        }
+
+        @Override
+        List<String> titles(Object first) {
+            return schema.getTitles();
+        }
+
+        @Override
+        void write(SheetCursor cursor, Object row) throws IOException {
+            for (int i = 0; i < schema.size(); i++) {
+                if (schema.getType(i) == AtomType.NUMBER && schema.isPrimitiveNumber(i)) {
+                    cursor.addNumber(i, schema.getDouble(row, i));
+                } else {
+                    cursor.addCell(i, schema.getType(i), schema.getValue(row, i));
+                }
+            }
+        }
+    }
+
+    private static class MapRowReader extends RowReader {
+        @Override
+        @SuppressWarnings("unchecked")
+        List<String> titles(Object first) {
+            return Lists.newArrayList(((Map<String, Object>) first).keySet());
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void write(SheetCursor cursor, Object row) throws IOException {
+            int i = 0;
+            for (Object value : ((Map<String, Object>) row).values()) {
+                cursor.addCell(i++, AtomType.typeOf(value), value);
+            }
+        }
+    }
+}
@@ -2,44 +2,69 @@ package io.milkwang.util.excel;
 
 
 import io.milkwang.util.common.DateUtils;
+import io.milkwang.util.common.MathUtils;
 import io.milkwang.util.common.TextUtils;
 import io.milkwang.util.excel.entity.Col;
 import io.milkwang.util.excel.entity.Excel;
 import io.milkwang.util.excel.entity.ExcelSheet;
 import io.milkwang.util.excel.entity.Row;
+import io.milkwang.util.excel.entity.SheetColumns;
 import io.milkwang.util.excel.helper.AtomType;
 import io.milkwang.util.excel.helper.ExcelBuilder;
-import jxl.Workbook;
-import jxl.write.*;
-import jxl.write.Number;
+import io.milkwang.util.excel.helper.ExcelFormat;
+import io.milkwang.util.excel.writer.SheetBuffer;
+import io.milkwang.util.excel.writer.WorkbookWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.math.BigDecimal;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.Date;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 public class ExcelUtils {
     private static Logger logger = LoggerFactory.getLogger(ExcelUtils.class);
+    /**
+     * 并行渲染sheet的线程池，线程数不超过CPU核数
+     */
+    static final ForkJoinPool RENDER_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("excel-render-" + thread.getPoolIndex());
+        return thread;
+    }, null, false);
+    /**
+     * 最多提前渲染的sheet数，已渲染未写出的sheet都留在内存中，不能按sheet总数无限提前
+     */
+    static final int MAX_SHEETS_AHEAD = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
 
     public static ExcelBuilder builder() {
         return ExcelBuilder.init();
     }
 
     public static File saveExcelFile(Excel excel) {
-        String excelName = excel.getName();
-        List<ExcelSheet> excelSheets = excel.getExcelSheets();
-
+        return saveExcelFile(excel, ExcelFormat.XLS);
+    }
 
-        String fileName;
-        if (excelName != null) {
-            fileName = excelName;
-        } else {
-            fileName = TextUtils.randomString(8);
-        }
-        File file = new File("/data/temp/" + fileName + ".xls");
+    /**
+     * 按照指定格式保存excel到/data/temp目录下
+     *
+     * @param excel  excel数据
+     * @param format 输出格式
+     * @return 生成的文件
+     */
+    public static File saveExcelFile(Excel excel, ExcelFormat format) {
+        File file = new File("/data/temp/" + getFileName(excel, format));
         // 创建缓存文件夹
         File parentFile = file.getParentFile();
         if (!parentFile.exists()) {
@@ -51,80 +76,218 @@ public class ExcelUtils {
             }
         }
 
-        WritableWorkbook book = null;
+        try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file))) {
+            writeExcel(excel, format, outputStream);
+        } catch (IOException e) {
+            logger.error(e.getLocalizedMessage(), e);
+        }
+        return file;
+    }
 
-        try {
-            book = Workbook.createWorkbook(file);
-            excelSheets.sort(((o1, o2) -> o1.getName().compareToIgnoreCase(o2.getName())));
+    /**
+     * 将excel以xls格式直接输出到流中，不会关闭这个流
+     *
+     * @param excel        excel数据
+     * @param outputStream 目标流
+     */
+    public static void writeExcel(Excel excel, OutputStream outputStream) throws IOException {
+        writeExcel(excel, ExcelFormat.XLS, outputStream);
+    }
+
+    /**
+     * 将excel直接输出到流中，不会产生临时文件，也不会关闭这个流<br/>
+     * 多个sheet时在共享的渲染线程池中并行渲染，最后按顺序写入
+     *
+     * @param excel        excel数据
+     * @param format       输出格式
+     * @param outputStream 目标流，例如HttpServletResponse.getOutputStream()
+     */
+    public static void writeExcel(Excel excel, ExcelFormat format, OutputStream outputStream) throws IOException {
+        writeExcel(excel, format, outputStream, RENDER_POOL);
+    }
+
+    /**
+     * 将excel直接输出到流中，不会关闭这个流<br/>
+     * 每个sheet的单元格(日期格式化、数字舍入、文本)在executor中并行渲染，只有最终的序列化按sheet顺序串行执行；
+     * 最多提前渲染MAX_SHEETS_AHEAD个sheet，内存占用不随sheet数增长
+     *
+     * @param excel        excel数据
+     * @param format       输出格式
+     * @param outputStream 目标流
+     * @param executor     渲染sheet使用的线程池
+     */
+    public static void writeExcel(Excel excel, ExcelFormat format, OutputStream outputStream, Executor executor) throws IOException {
+        try (WorkbookWriter writer = format.newWriter(outputStream)) {
+            writeExcel(excel, writer, executor);
+        }
+    }
+
+    /**
+     * 将所有sheet按名字排序后写入writer，不会关闭writer
+     */
+    static void writeExcel(Excel excel, WorkbookWriter writer, Executor executor) throws IOException {
+        List<ExcelSheet> excelSheets = excel.getExcelSheets();
+        excelSheets.sort(((o1, o2) -> o1.getName().compareToIgnoreCase(o2.getName())));
+        if (excelSheets.size() <= 1) {
             for (ExcelSheet sheet : excelSheets) {
-                // 渲染sheet
-                String sheetName = sheet.getName();
-                List<Row> rows = sheet.getRows();
-                List<String> titles = sheet.getTitles();
-
-                WritableSheet excelSheet = book.createSheet(sheetName, book.getNumberOfSheets());
-                int rowSize = 0;
-                // 输出表头
-                for (int i = 0; i < titles.size(); i++) {
-                    String title = titles.get(i);
-                    excelSheet.addCell(new Label(i, rowSize, title));
+                writeSheet(writer, sheet);
+            }
+            return;
+        }
+        int maxRows = writer.maxRowsPerSheet();
+        Deque<CompletableFuture<SheetBuffer>> buffers = new ArrayDeque<>(MAX_SHEETS_AHEAD);
+        int submitted = 0;
+        try {
+            for (int i = 0; i < excelSheets.size(); i++) {
+                // 当前sheet之后最多再渲染MAX_SHEETS_AHEAD - 1个
+                while (submitted < excelSheets.size() && submitted < i + MAX_SHEETS_AHEAD) {
+                    ExcelSheet sheet = excelSheets.get(submitted++);
+                    buffers.addLast(CompletableFuture.supplyAsync(() -> renderSheet(sheet, maxRows), executor));
                 }
-                rowSize++;
-                // 输出内容
-                for (Row row : rows) {
-                    List<Col> cols = row.getCols();
-                    for (int i = 0; i < cols.size(); i++) {
-                        Col col = cols.get(i);
-                        AtomType type = col.getType();
-                        Object value = col.getValue();
-                        if (value != null) {
-                            switch (type) {
-                                case DATETIME: {
-                                    Date date = (Date) value;
-                                    excelSheet.addCell(new Label(i, rowSize, DateUtils.parseDateTimeToString(date)));
-                                    break;
-                                }
-                                case DATE: {
-                                    Date date = (Date) value;
-                                    excelSheet.addCell(new Label(i, rowSize, DateUtils.parseDateToString(date)));
-                                    break;
-                                }
-                                case NUMBER: {
-                                    double number = Double.parseDouble(value.toString());
-                                    if (Double.isInfinite(number) || Double.isNaN(number)) {
-                                        excelSheet.addCell(new Label(i, rowSize, "error"));
-                                    } else {
-                                        excelSheet.addCell(new Number(i, rowSize, new BigDecimal(number).setScale(4, BigDecimal.ROUND_UP).doubleValue()));
-                                    }
-
-                                    break;
-                                }
-                                case STRING: {
-                                    excelSheet.addCell(new Label(i, rowSize, value.toString()));
-                                    break;
-                                }
-                                default: {
-                                    excelSheet.addCell(new Label(i, rowSize, value.toString()));
-                                }
-                            }
-                        }
+                SheetBuffer buffer = join(buffers.removeFirst());
+                buffer.replayTo(writer);
+            }
+        } finally {
+            // 出错时尚未开始的sheet不再渲染
+            buffers.forEach(future -> future.cancel(false));
+        }
+    }
+
+    /**
+     * 还原渲染中抛出的原始异常
+     */
+    private static SheetBuffer join(CompletableFuture<SheetBuffer> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 生成excel的文件名，没有设置名字时随机生成
+     *
+     * @param excel  excel数据
+     * @param format 输出格式
+     * @return 带后缀的文件名
+     */
+    public static String getFileName(Excel excel, ExcelFormat format) {
+        String excelName = excel.getName();
+        String fileName;
+        if (excelName != null) {
+            fileName = excelName;
+        } else {
+            fileName = TextUtils.randomString(8);
+        }
+        return fileName + format.getExtension();
+    }
+
+    private static SheetBuffer renderSheet(ExcelSheet sheet, int maxRows) {
+        SheetBuffer buffer = new SheetBuffer(maxRows);
+        try {
+            writeSheet(buffer, sheet);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer;
+    }
+
+    private static void writeSheet(WorkbookWriter writer, ExcelSheet sheet) throws IOException {
+        // 渲染sheet
+        List<String> titles = sheet.getTitles();
+
+        writer.startSheet(sheet.getName());
+        // 输出表头
+        writer.startRow();
+        for (int i = 0; i < titles.size(); i++) {
+            writer.writeLabel(i, titles.get(i));
+        }
+        writer.endRow();
+        // 输出内容
+        SheetColumns columns = sheet.getColumns();
+        if (columns != null) {
+            for (int row = 0; row < columns.getRowCount(); row++) {
+                writer.startRow();
+                for (int i = 0; i < columns.getColumnCount(); i++) {
+                    if (columns.isNumber(row, i)) {
+                        writeNumber(writer, i, columns.getNumber(row, i));
+                    } else if (columns.exists(row, i)) {
+                        writeCell(writer, i, columns.getType(row, i), columns.getValue(row, i));
                     }
-                    rowSize++;
                 }
+                writer.endRow();
             }
-            book.write();
-
-        } catch (IOException | WriteException e) {
-            logger.error(e.getLocalizedMessage(), e);
-        } finally {
-            if (book != null) {
-                try {
-                    book.close();
-                } catch (Exception e) {
-                    logger.error(e.getLocalizedMessage(), e);
+        } else {
+            for (Row row : sheet.getRows()) {
+                List<Col> cols = row.getCols();
+                writer.startRow();
+                for (int i = 0; i < cols.size(); i++) {
+                    Col col = cols.get(i);
+                    writeCell(writer, i, col.getType(), col.getValue());
                 }
+                writer.endRow();
             }
         }
-        return file;
+        writer.endSheet();
+    }
+
+    /**
+     * 按照原始类型渲染一个单元格，value为null时不输出
+     *
+     * @param writer 写入器
+     * @param col    列号
+     * @param type   原始类型
+     * @param value  单元格的值
+     */
+    static void writeCell(WorkbookWriter writer, int col, AtomType type, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        switch (type) {
+            case DATETIME: {
+                Date date = (Date) value;
+                writer.writeLabel(col, DateUtils.parseDateTimeToString(date));
+                break;
+            }
+            case DATE: {
+                Date date = (Date) value;
+                writer.writeLabel(col, DateUtils.parseDateToString(date));
+                break;
+            }
+            case NUMBER: {
+                writeNumber(writer, col, AtomType.toDouble(value));
+                break;
+            }
+            case STRING: {
+                writer.writeLabel(col, value.toString());
+                break;
+            }
+            default: {
+                writer.writeLabel(col, value.toString());
+            }
+        }
+    }
+
+    /**
+     * 渲染一个数字单元格，保留4位小数并远离0舍入，无穷大和NaN输出为error
+     *
+     * @param writer 写入器
+     * @param col    列号
+     * @param number 数字
+     */
+    static void writeNumber(WorkbookWriter writer, int col, double number) throws IOException {
+        if (Double.isInfinite(number) || Double.isNaN(number)) {
+            writer.writeLabel(col, "error");
+        } else {
+            writer.writeNumber(col, MathUtils.roundUp(number, 4));
+        }
     }
 }
@@ -11,6 +11,10 @@ public class ExcelSheet {
     private String name;
     private List<String> titles;
     private List<Row> rows;
+    /**
+     * 按列存储的内容，存在时优先于rows使用
+     */
+    private SheetColumns columns;
 
     public String getName() {
         return name;
@@ -28,11 +32,28 @@ public class ExcelSheet {
         this.titles = titles;
     }
 
+    /**
+     * 读取Row/Col形式的内容，按列存储时会转换一次，之后以rows为准
+     */
     public List<Row> getRows() {
+        if (rows == null && columns != null) {
+            rows = columns.toRows();
+            columns = null;
+        }
         return rows;
     }
 
     public void setRows(List<Row> rows) {
         this.rows = rows;
+        this.columns = null;
+    }
+
+    public SheetColumns getColumns() {
+        return columns;
+    }
+
+    public void setColumns(SheetColumns columns) {
+        this.columns = columns;
+        this.rows = null;
     }
 }
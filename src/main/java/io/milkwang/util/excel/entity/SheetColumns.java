@@ -0,0 +1,175 @@
+package io.milkwang.util.excel.entity;
+
+import io.milkwang.util.excel.helper.AtomType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 按列存储的sheet内容，用来替代Row/Col<br/>
+ * 数字单元格直接存为double，只有非数字的单元格才会保存对象，导出数字为主的大表时几乎不产生额外对象
+ * <ul>
+ *     <li>每一列包含一个类型数组、一个double数组，对象数组在第一次写入非数字值时才创建</li>
+ *     <li>数字在写入时就转换为double，与之前逐个单元格Double.parseDouble(value.toString())的结果一致</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+public class SheetColumns {
+    private static final int INITIAL_CAPACITY = 64;
+    /**
+     * 类型数组中表示没有这个单元格
+     */
+    private static final byte ABSENT = 0;
+    /**
+     * 类型数组中表示值保存在double数组中
+     */
+    private static final byte PRIMITIVE = 0x40;
+    private static final AtomType[] TYPES = AtomType.values();
+
+    private int rowCount;
+    private int capacity = INITIAL_CAPACITY;
+    /**
+     * 每个单元格的类型：0表示没有，低位为AtomType.ordinal() + 1
+     */
+    private byte[][] kinds = new byte[0][];
+    private double[][] numbers = new double[0][];
+    private Object[][] values = new Object[0][];
+
+    /**
+     * 追加一行，之后的set操作都作用在这一行上
+     */
+    public void addRow() {
+        if (rowCount == capacity) {
+            capacity = capacity << 1;
+            for (int col = 0; col < kinds.length; col++) {
+                kinds[col] = Arrays.copyOf(kinds[col], capacity);
+                numbers[col] = Arrays.copyOf(numbers[col], capacity);
+                if (values[col] != null) {
+                    values[col] = Arrays.copyOf(values[col], capacity);
+                }
+            }
+        }
+        rowCount++;
+    }
+
+    /**
+     * 设置当前行一个数字单元格的值
+     *
+     * @param col    列号
+     * @param number 数字
+     */
+    public void setNumber(int col, double number) {
+        ensureColumn(col);
+        int row = rowCount - 1;
+        kinds[col][row] = (byte) ((AtomType.NUMBER.ordinal() + 1) | PRIMITIVE);
+        numbers[col][row] = number;
+    }
+
+    /**
+     * 设置当前行一个单元格的值，NUMBER类型的值会转换为double保存
+     *
+     * @param col   列号
+     * @param type  原始类型
+     * @param value 单元格的值，可以为null
+     */
+    public void set(int col, AtomType type, Object value) {
+        if (type == AtomType.NUMBER && value != null) {
+            try {
+                setNumber(col, AtomType.toDouble(value));
+                return;
+            } catch (NumberFormatException ignore) {
+                // 保留原值，导出时再报错
+            }
+        }
+        ensureColumn(col);
+        int row = rowCount - 1;
+        kinds[col][row] = (byte) (type.ordinal() + 1);
+        if (value != null) {
+            if (values[col] == null) {
+                values[col] = new Object[capacity];
+            }
+            values[col][row] = value;
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return kinds.length;
+    }
+
+    /**
+     * 单元格是否存在，不存在的单元格不会输出
+     */
+    public boolean exists(int row, int col) {
+        return kinds[col][row] != ABSENT;
+    }
+
+    /**
+     * 单元格的值是否保存为double，是的话使用getNumber读取
+     */
+    public boolean isNumber(int row, int col) {
+        return (kinds[col][row] & PRIMITIVE) != 0;
+    }
+
+    public double getNumber(int row, int col) {
+        return numbers[col][row];
+    }
+
+    public AtomType getType(int row, int col) {
+        byte kind = kinds[col][row];
+        return kind == ABSENT ? null : TYPES[(kind & ~PRIMITIVE) - 1];
+    }
+
+    /**
+     * 读取单元格的值，数字会被装箱为Double
+     */
+    public Object getValue(int row, int col) {
+        if (isNumber(row, col)) {
+            return numbers[col][row];
+        }
+        return values[col] == null ? null : values[col][row];
+    }
+
+    /**
+     * 转换为Row/Col的形式，兼容直接读取ExcelSheet.getRows()的代码
+     */
+    public List<Row> toRows() {
+        List<Row> rows = new ArrayList<>(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            int width = kinds.length;
+            while (width > 0 && !exists(row, width - 1)) {
+                width--;
+            }
+            List<Col> cols = new ArrayList<>(width);
+            for (int col = 0; col < width; col++) {
+                Col cell = new Col();
+                cell.setType(exists(row, col) ? getType(row, col) : AtomType.STRING);
+                cell.setValue(getValue(row, col));
+                cols.add(cell);
+            }
+            Row tempRow = new Row();
+            tempRow.setCols(cols);
+            rows.add(tempRow);
+        }
+        return rows;
+    }
+
+    private void ensureColumn(int col) {
+        if (col < kinds.length) {
+            return;
+        }
+        int oldCount = kinds.length;
+        kinds = Arrays.copyOf(kinds, col + 1);
+        numbers = Arrays.copyOf(numbers, col + 1);
+        values = Arrays.copyOf(values, col + 1);
+        for (int i = oldCount; i <= col; i++) {
+            kinds[i] = new byte[capacity];
+            numbers[i] = new double[capacity];
+        }
+    }
+}
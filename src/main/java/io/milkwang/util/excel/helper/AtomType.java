@@ -1,5 +1,8 @@
 package io.milkwang.util.excel.helper;
 
+import java.math.BigDecimal;
+import java.util.Date;
+
 /**
  * 原始类型枚举
  */
@@ -19,5 +22,40 @@ public enum AtomType {
     /**
      * 日期时间
      */
-    DATETIME
+    DATETIME;
+
+    /**
+     * 根据值推断原始类型，无法识别的类型默认按字符串处理
+     *
+     * @param value 单元格的值
+     * @return 原始类型
+     */
+    public static AtomType typeOf(Object value) {
+        if (value instanceof String) {
+            return STRING;
+        } else if (value instanceof Double || value instanceof Integer || value instanceof Long || value instanceof Float) {
+            return NUMBER;
+        } else if (value instanceof Date) {
+            return DATETIME;
+        } else {
+            return STRING;
+        }
+    }
+
+    /**
+     * 读取数字单元格的值，结果与Double.parseDouble(value.toString())一致<br/>
+     * 常见的数字类型直接取值，不经过toString和解析
+     *
+     * @param value 单元格的值
+     * @return double值
+     * @throws NumberFormatException 值不是合法的数字
+     */
+    public static double toDouble(Object value) {
+        if (value instanceof Double || value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte || value instanceof BigDecimal) {
+            return ((Number) value).doubleValue();
+        }
+        // Float的toString与double的精度不同，需要按文本解析
+        return Double.parseDouble(value.toString());
+    }
 }
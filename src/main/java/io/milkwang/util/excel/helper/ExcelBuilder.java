@@ -2,17 +2,13 @@ package io.milkwang.util.excel.helper;
 
 
 import com.google.common.collect.Lists;
-import io.milkwang.util.excel.entity.Col;
 import io.milkwang.util.excel.entity.Excel;
 import io.milkwang.util.excel.entity.ExcelSheet;
-import io.milkwang.util.excel.entity.Row;
+import io.milkwang.util.excel.entity.SheetColumns;
 import org.apache.commons.collections4.CollectionUtils;
 
-import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
 
 /**
  * Excel工具类
@@ -58,72 +54,43 @@ public class ExcelBuilder {
         // 设置title
         List<String> titles;
         Object data = sheetData.get(0);
-        Boolean isJxlAtom = Lists.newArrayList(data.getClass().getDeclaredFields()).stream()
-                .anyMatch(field -> field.isAnnotationPresent(JxlAtom.class));
+        boolean isJxlAtom = !JxlAtomSchema.of(data.getClass()).isEmpty();
         if (isJxlAtom) {
-            titles = Lists.newArrayList(data.getClass().getDeclaredFields())
-                    .stream()
-                    .filter(item -> item.getDeclaredAnnotation(JxlAtom.class) != null)
-                    .sorted((o1, o2) -> {
-                        int o1Seq = o1.getDeclaredAnnotation(JxlAtom.class).order();
-                        int o2Seq = o2.getDeclaredAnnotation(JxlAtom.class).order();
-                        return o1Seq - o2Seq;
-                    }).map(item -> item.getDeclaredAnnotation(JxlAtom.class).name())
-                    .collect(Collectors.toList());
+            titles = Lists.newArrayList(JxlAtomSchema.of(data.getClass()).getTitles());
         } else {
             LinkedHashMap<String, Object> firstMap = (LinkedHashMap<String, Object>) data;
             titles = Lists.newArrayList(firstMap.keySet());
         }
-        // 填充数据 rows
-        List<Row> rows;
+        // 填充数据，按列存储
+        SheetColumns columns = new SheetColumns();
         if (isJxlAtom) {
             // 注解形式
-            rows = sheetData.stream()
-                    .map(row -> {
-                        List<Col> cols = Lists.newArrayList(row.getClass().getDeclaredFields())
-                                .stream()
-                                .filter(item -> item.getDeclaredAnnotation(JxlAtom.class) != null)
-                                .sorted((o1, o2) -> {
-                                    int o1Seq = o1.getDeclaredAnnotation(JxlAtom.class).order();
-                                    int o2Seq = o2.getDeclaredAnnotation(JxlAtom.class).order();
-                                    return o1Seq - o2Seq;
-                                })
-                                .map(item -> {
-                                    try {
-                                        Col col = new Col();
-                                        item.setAccessible(true);
-                                        JxlAtom atom = item.getDeclaredAnnotation(JxlAtom.class);
-                                        col.setType(atom.type());
-                                        col.setValue(item.get(row));
-                                        return col;
-                                    } catch (Exception e) {
-                                        e.printStackTrace();
-                                        return null;
-                                    }
-                                })
-                                .filter(Objects::nonNull)
-                                .collect(Collectors.toList());
-                        Row tempRow = new Row();
-                        tempRow.setCols(cols);
-                        return tempRow;
-                    })
-                    .collect(Collectors.toList());
+            for (Object row : sheetData) {
+                JxlAtomSchema schema = JxlAtomSchema.of(row.getClass());
+                columns.addRow();
+                for (int i = 0; i < schema.size(); i++) {
+                    try {
+                        if (schema.getType(i) == AtomType.NUMBER && schema.isPrimitiveNumber(i)) {
+                            columns.setNumber(i, schema.getDouble(row, i));
+                        } else {
+                            columns.set(i, schema.getType(i), schema.getValue(row, i));
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
         } else {
             // map形式
-            rows = sheetData.stream()
-                    .map(row -> {
-                        List<Col> cols = ((LinkedHashMap<String, Object>) row)
-                                .values()
-                                .stream()
-                                .map(this::generateCol)
-                                .collect(Collectors.toList());
-                        Row tempRow = new Row();
-                        tempRow.setCols(cols);
-                        return tempRow;
-                    })
-                    .collect(Collectors.toList());
+            for (Object row : sheetData) {
+                columns.addRow();
+                int i = 0;
+                for (Object value : ((LinkedHashMap<String, Object>) row).values()) {
+                    columns.set(i++, AtomType.typeOf(value), value);
+                }
+            }
         }
-        sheet.setRows(rows);
+        sheet.setColumns(columns);
         sheet.setTitles(titles);
         sheet.setName(name);
         this.excel.getExcelSheets().add(sheet);
@@ -138,21 +105,4 @@ public class ExcelBuilder {
     }
 
 
-    private Col generateCol(Object value) {
-        Col col = new Col();
-        col.setValue(value);
-        if (value instanceof String) {
-            col.setType(AtomType.STRING);
-        } else if (value instanceof Double || value instanceof Integer || value instanceof Long || value instanceof Float) {
-            col.setType(AtomType.NUMBER);
-        } else if (value instanceof Date) {
-            col.setType(AtomType.DATETIME);
-        } else {
-            // 默认设置为字符串
-            col.setType(AtomType.STRING);
-        }
-        return col;
-    }
-
-
 }
@@ -0,0 +1,95 @@
+package io.milkwang.util.excel.helper;
+
+import io.milkwang.util.excel.reader.WorkbookReader;
+import io.milkwang.util.excel.reader.XlsWorkbookReader;
+import io.milkwang.util.excel.reader.XlsxWorkbookReader;
+import io.milkwang.util.excel.writer.WorkbookWriter;
+import io.milkwang.util.excel.writer.XlsWorkbookWriter;
+import io.milkwang.util.excel.writer.XlsxWorkbookWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Excel输出格式枚举
+ */
+public enum ExcelFormat {
+    /**
+     * 老版本的xls，基于jxl输出，单个sheet最多65536行
+     */
+    XLS(".xls", "application/vnd.ms-excel"),
+    /**
+     * OOXML格式的xlsx，流式输出，单个sheet最多1048576行
+     */
+    XLSX(".xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+
+    private final String extension;
+    private final String contentType;
+
+    ExcelFormat(String extension, String contentType) {
+        this.extension = extension;
+        this.contentType = contentType;
+    }
+
+    /**
+     * 根据文件名后缀判断格式，无法识别时使用xls
+     *
+     * @param fileName 文件名
+     * @return 输出格式
+     */
+    public static ExcelFormat fromFileName(String fileName) {
+        if (fileName != null && fileName.toLowerCase().endsWith(XLSX.extension)) {
+            return XLSX;
+        }
+        return XLS;
+    }
+
+    /**
+     * 创建对应格式的写入器
+     *
+     * @param outputStream 目标流，写入器close时不会关闭
+     * @return 写入器
+     */
+    public WorkbookWriter newWriter(OutputStream outputStream) throws IOException {
+        if (this == XLSX) {
+            return new XlsxWorkbookWriter(outputStream);
+        }
+        return new XlsWorkbookWriter(outputStream);
+    }
+
+    /**
+     * 创建对应格式的读取器
+     *
+     * @param file 源文件
+     * @return 读取器
+     */
+    public WorkbookReader newReader(File file) throws IOException {
+        if (this == XLSX) {
+            return new XlsxWorkbookReader(file);
+        }
+        return new XlsWorkbookReader(file);
+    }
+
+    /**
+     * 创建对应格式的读取器，读取器close时不会关闭这个流
+     *
+     * @param inputStream 源数据
+     * @return 读取器
+     */
+    public WorkbookReader newReader(InputStream inputStream) throws IOException {
+        if (this == XLSX) {
+            return new XlsxWorkbookReader(inputStream);
+        }
+        return new XlsWorkbookReader(inputStream);
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+}
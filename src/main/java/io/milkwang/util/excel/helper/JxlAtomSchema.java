@@ -0,0 +1,243 @@
+package io.milkwang.util.excel.helper;
+
+import com.google.common.collect.Lists;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+/**
+ * 带有{@link JxlAtom}注解的类的列信息<br/>
+ * 每个类只做一次反射解析，结果缓存在ClassValue中，后续每一行只需要调用生成好的取值函数<br/>
+ * 与原来的反射实现一样直接读取字段(字段的MethodHandle)，不经过getter，getter中的格式化、默认值等不影响导出的内容
+ *
+ * @author nethunder
+ */
+public final class JxlAtomSchema {
+    private static final ClassValue<JxlAtomSchema> CACHE = new ClassValue<JxlAtomSchema>() {
+        @Override
+        protected JxlAtomSchema computeValue(Class<?> type) {
+            return new JxlAtomSchema(type);
+        }
+    };
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType DOUBLE_GETTER_TYPE = MethodType.methodType(double.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final List<Field> fields;
+    private final List<String> titles;
+    private final AtomType[] types;
+    private final Function<Object, Object>[] getters;
+    /**
+     * 整型和double字段的取值函数，不会装箱；其余字段为null
+     */
+    private final ToDoubleFunction<Object>[] doubleGetters;
+    /**
+     * 导入时使用，final字段没有setter
+     */
+    private final MethodHandle[] setters;
+    private final MethodHandle constructor;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private JxlAtomSchema(Class<?> clazz) {
+        this.fields = Collections.unmodifiableList(Lists.newArrayList(clazz.getDeclaredFields())
+                .stream()
+                .filter(field -> field.isAnnotationPresent(JxlAtom.class))
+                .sorted(Comparator.comparingInt(field -> field.getDeclaredAnnotation(JxlAtom.class).order()))
+                .collect(Collectors.toList()));
+        this.titles = Collections.unmodifiableList(fields.stream()
+                .map(field -> field.getDeclaredAnnotation(JxlAtom.class).name())
+                .collect(Collectors.toList()));
+        this.types = fields.stream()
+                .map(field -> field.getDeclaredAnnotation(JxlAtom.class).type())
+                .toArray(AtomType[]::new);
+        this.getters = new Function[fields.size()];
+        for (int i = 0; i < getters.length; i++) {
+            getters[i] = createGetter(fields.get(i));
+        }
+        this.doubleGetters = new ToDoubleFunction[fields.size()];
+        for (int i = 0; i < doubleGetters.length; i++) {
+            doubleGetters[i] = createDoubleGetter(fields.get(i));
+        }
+        this.setters = new MethodHandle[fields.size()];
+        for (int i = 0; i < setters.length; i++) {
+            setters[i] = createSetter(fields.get(i));
+        }
+        this.constructor = createConstructor(clazz);
+    }
+
+    /**
+     * 获取类的列信息，同一个类只会解析一次
+     *
+     * @param clazz 数据类
+     * @return 列信息
+     */
+    public static JxlAtomSchema of(Class<?> clazz) {
+        return CACHE.get(clazz);
+    }
+
+    /**
+     * 是否没有任何JxlAtom注解的字段
+     */
+    public boolean isEmpty() {
+        return fields.isEmpty();
+    }
+
+    /**
+     * 列数
+     */
+    public int size() {
+        return fields.size();
+    }
+
+    /**
+     * 按照order排好序的表头
+     */
+    public List<String> getTitles() {
+        return titles;
+    }
+
+    /**
+     * 按照order排好序的字段
+     */
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    public AtomType getType(int index) {
+        return types[index];
+    }
+
+    /**
+     * 读取一行数据中第index列的值
+     *
+     * @param row   行数据，必须是当前类的实例
+     * @param index 列号
+     * @return 列的值
+     */
+    public Object getValue(Object row, int index) {
+        return getters[index].apply(row);
+    }
+
+    /**
+     * 第index列是否是可以不装箱直接读取为double的基本类型(byte/short/int/long/double)<br/>
+     * float的toString与double不同，不在此列
+     */
+    public boolean isPrimitiveNumber(int index) {
+        return doubleGetters[index] != null;
+    }
+
+    /**
+     * 不装箱读取基本类型列的值，调用前需要先判断isPrimitiveNumber
+     *
+     * @param row   行数据，必须是当前类的实例
+     * @param index 列号
+     * @return 列的值
+     */
+    public double getDouble(Object row, int index) {
+        return doubleGetters[index].applyAsDouble(row);
+    }
+
+    /**
+     * 写入一行数据中第index列的值，值的类型需要和字段类型一致
+     *
+     * @param row   行数据，必须是当前类的实例
+     * @param index 列号
+     * @param value 列的值
+     */
+    public void setValue(Object row, int index, Object value) {
+        if (setters[index] == null) {
+            throw new IllegalStateException("field " + fields.get(index).getName() + " is not writable");
+        }
+        try {
+            setters[index].invokeExact(row, value);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 使用无参构造函数创建一个实例
+     */
+    public Object newInstance() {
+        if (constructor == null) {
+            throw new IllegalStateException("no default constructor found");
+        }
+        try {
+            return constructor.invoke();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle createSetter(Field field) {
+        if (Modifier.isFinal(field.getModifiers())) {
+            return null;
+        }
+        try {
+            field.setAccessible(true);
+            return MethodHandles.lookup().unreflectSetter(field).asType(SETTER_TYPE);
+        } catch (IllegalAccessException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle createConstructor(Class<?> clazz) {
+        try {
+            Constructor<?> constructor = clazz.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor);
+        } catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Function<Object, Object> createGetter(Field field) {
+        try {
+            field.setAccessible(true);
+            MethodHandle handle = MethodHandles.lookup().unreflectGetter(field).asType(GETTER_TYPE);
+            return row -> {
+                try {
+                    return handle.invokeExact(row);
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ToDoubleFunction<Object> createDoubleGetter(Field field) {
+        Class<?> type = field.getType();
+        if (type != byte.class && type != short.class && type != int.class && type != long.class && type != double.class) {
+            return null;
+        }
+        try {
+            field.setAccessible(true);
+            MethodHandle handle = MethodHandles.lookup().unreflectGetter(field).asType(DOUBLE_GETTER_TYPE);
+            return row -> {
+                try {
+                    return (double) handle.invokeExact(row);
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
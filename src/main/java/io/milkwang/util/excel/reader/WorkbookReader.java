@@ -0,0 +1,28 @@
+package io.milkwang.util.excel.reader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 按行读取workbook的底层读取器<br/>
+ * 每一行是按列号排列的单元格数组，空单元格为null，其余单元格为String、Double、Boolean或Date；
+ * 第n个返回的行就是sheet中的第n行，没有数据的行为空数组或者全部为null的数组
+ *
+ * @author nethunder
+ */
+public interface WorkbookReader extends Closeable {
+    /**
+     * 按顺序返回所有sheet的名字
+     */
+    List<String> getSheetNames() throws IOException;
+
+    /**
+     * 逐行读取指定sheet，迭代过程中发生的IO异常会以UncheckedIOException抛出
+     *
+     * @param sheetIndex sheet下标，从0开始
+     * @return 行迭代器
+     */
+    Iterator<Object[]> rows(int sheetIndex) throws IOException;
+}
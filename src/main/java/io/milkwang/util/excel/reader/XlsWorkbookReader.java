@@ -0,0 +1,97 @@
+package io.milkwang.util.excel.reader;
+
+import jxl.Cell;
+import jxl.CellType;
+import jxl.DateCell;
+import jxl.NumberCell;
+import jxl.Sheet;
+import jxl.Workbook;
+import jxl.read.biff.BiffException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TimeZone;
+
+/**
+ * 基于jxl读取.xls，jxl会一次性把整个workbook读入内存，逐行绑定对象的过程不会再额外占用内存
+ *
+ * @author nethunder
+ */
+public class XlsWorkbookReader implements WorkbookReader {
+    private final Workbook workbook;
+
+    public XlsWorkbookReader(File file) throws IOException {
+        try {
+            this.workbook = Workbook.getWorkbook(file);
+        } catch (BiffException e) {
+            throw new IOException(e.getLocalizedMessage(), e);
+        }
+    }
+
+    public XlsWorkbookReader(InputStream inputStream) throws IOException {
+        try {
+            this.workbook = Workbook.getWorkbook(inputStream);
+        } catch (BiffException e) {
+            throw new IOException(e.getLocalizedMessage(), e);
+        }
+    }
+
+    @Override
+    public List<String> getSheetNames() {
+        return Arrays.asList(workbook.getSheetNames());
+    }
+
+    @Override
+    public Iterator<Object[]> rows(int sheetIndex) {
+        Sheet sheet = workbook.getSheet(sheetIndex);
+        return new Iterator<Object[]>() {
+            private int row;
+
+            @Override
+            public boolean hasNext() {
+                return row < sheet.getRows();
+            }
+
+            @Override
+            public Object[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Cell[] cells = sheet.getRow(row++);
+                Object[] values = new Object[cells.length];
+                for (int i = 0; i < cells.length; i++) {
+                    values[i] = valueOf(cells[i]);
+                }
+                return values;
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        workbook.close();
+    }
+
+    private static Object valueOf(Cell cell) {
+        CellType type = cell.getType();
+        if (type == CellType.EMPTY) {
+            return null;
+        } else if (cell instanceof NumberCell) {
+            return ((NumberCell) cell).getValue();
+        } else if (cell instanceof DateCell) {
+            // jxl按GMT还原日期，与xlsx一样按照本地时区还原
+            long utcMillis = ((DateCell) cell).getDate().getTime();
+            return new Date(utcMillis - TimeZone.getDefault().getOffset(utcMillis));
+        } else if (type == CellType.BOOLEAN || type == CellType.BOOLEAN_FORMULA) {
+            return Boolean.valueOf(cell.getContents());
+        }
+        String contents = cell.getContents();
+        return contents == null || contents.isEmpty() ? null : contents;
+    }
+}
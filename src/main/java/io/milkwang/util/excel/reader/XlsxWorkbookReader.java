@@ -0,0 +1,326 @@
+package io.milkwang.util.excel.reader;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 使用StAX逐行解析.xlsx，sheet的xml不会整体读入内存<br/>
+ * sharedStrings需要随机访问，会完整加载；传入InputStream时会先落到临时文件，close时删除
+ *
+ * @author nethunder
+ */
+public class XlsxWorkbookReader implements WorkbookReader {
+    private static final Object[] EMPTY_ROW = new Object[0];
+    private static final String NS_DOC_RELATIONSHIPS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        // 禁止DTD和外部实体，防止XXE
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final ZipFile zip;
+    private final File tempFile;
+    private List<String> sheetNames;
+    private List<String> sheetPaths;
+    private List<String> sharedStrings;
+
+    public XlsxWorkbookReader(File file) throws IOException {
+        this.zip = new ZipFile(file);
+        this.tempFile = null;
+    }
+
+    public XlsxWorkbookReader(InputStream inputStream) throws IOException {
+        File temp = File.createTempFile("excel-import", ".xlsx");
+        try {
+            Files.copy(inputStream, temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            this.zip = new ZipFile(temp);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp.toPath());
+            throw e;
+        }
+        this.tempFile = temp;
+    }
+
+    @Override
+    public List<String> getSheetNames() throws IOException {
+        loadWorkbook();
+        return sheetNames;
+    }
+
+    @Override
+    public Iterator<Object[]> rows(int sheetIndex) throws IOException {
+        loadWorkbook();
+        loadSharedStrings();
+        ZipEntry entry = zip.getEntry(sheetPaths.get(sheetIndex));
+        if (entry == null) {
+            throw new IOException("sheet not found: " + sheetPaths.get(sheetIndex));
+        }
+        return new SheetIterator(zip.getInputStream(entry));
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            zip.close();
+        } finally {
+            if (tempFile != null) {
+                Files.deleteIfExists(tempFile.toPath());
+            }
+        }
+    }
+
+    private void loadWorkbook() throws IOException {
+        if (sheetNames != null) {
+            return;
+        }
+        Map<String, String> targets = new HashMap<>();
+        parse("xl/_rels/workbook.xml.rels", reader -> {
+            if ("Relationship".equals(reader.getLocalName())) {
+                targets.put(reader.getAttributeValue(null, "Id"), reader.getAttributeValue(null, "Target"));
+            }
+        });
+        List<String> names = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+        parse("xl/workbook.xml", reader -> {
+            if ("sheet".equals(reader.getLocalName())) {
+                names.add(reader.getAttributeValue(null, "name"));
+                String target = targets.get(reader.getAttributeValue(NS_DOC_RELATIONSHIPS, "id"));
+                if (target == null) {
+                    paths.add("xl/worksheets/sheet" + names.size() + ".xml");
+                } else {
+                    paths.add(target.startsWith("/") ? target.substring(1) : "xl/" + target);
+                }
+            }
+        });
+        this.sheetPaths = paths;
+        this.sheetNames = names;
+    }
+
+    private void loadSharedStrings() throws IOException {
+        if (sharedStrings != null) {
+            return;
+        }
+        List<String> strings = new ArrayList<>();
+        ZipEntry entry = zip.getEntry("xl/sharedStrings.xml");
+        if (entry != null) {
+            try (InputStream inputStream = zip.getInputStream(entry)) {
+                XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+                StringBuilder text = null;
+                // 注音(rPh)中的文本不属于单元格内容
+                int phonetic = 0;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if ("si".equals(name)) {
+                            text = new StringBuilder();
+                        } else if ("rPh".equals(name)) {
+                            phonetic++;
+                        } else if ("t".equals(name) && text != null && phonetic == 0) {
+                            text.append(reader.getElementText());
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if ("si".equals(name) && text != null) {
+                            strings.add(text.toString());
+                            text = null;
+                        } else if ("rPh".equals(name)) {
+                            phonetic--;
+                        }
+                    }
+                }
+                reader.close();
+            } catch (XMLStreamException e) {
+                throw new IOException(e.getLocalizedMessage(), e);
+            }
+        }
+        this.sharedStrings = strings;
+    }
+
+    private void parse(String path, StartElementHandler handler) throws IOException {
+        ZipEntry entry = zip.getEntry(path);
+        if (entry == null) {
+            throw new IOException("invalid xlsx, missing " + path);
+        }
+        try (InputStream inputStream = zip.getInputStream(entry)) {
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    handler.accept(reader);
+                }
+            }
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getLocalizedMessage(), e);
+        }
+    }
+
+    /**
+     * 解析"AB12"这样的单元格坐标中的列号，从0开始
+     */
+    static int columnIndex(String reference) {
+        int col = 0;
+        for (int i = 0; i < reference.length(); i++) {
+            char c = reference.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            col = col * 26 + (c - 'A' + 1);
+        }
+        return col - 1;
+    }
+
+    private interface StartElementHandler {
+        void accept(XMLStreamReader reader) throws XMLStreamException;
+    }
+
+    /**
+     * 每次只解析出一行，读完最后一行后自动关闭输入流<br/>
+     * xlsx中不保存没有数据的行，按照row的r属性补上空行，行的下标与sheet中的行号一致
+     */
+    private final class SheetIterator implements Iterator<Object[]> {
+        private final InputStream inputStream;
+        private final XMLStreamReader reader;
+        private Object[] next;
+        private Object[] pending;
+        private int pendingRowNumber;
+        private int returnedRows;
+        private boolean finished;
+
+        SheetIterator(InputStream inputStream) throws IOException {
+            this.inputStream = inputStream;
+            try {
+                this.reader = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+            } catch (XMLStreamException e) {
+                inputStream.close();
+                throw new IOException(e.getLocalizedMessage(), e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && pending == null && !finished) {
+                try {
+                    pending = readRow();
+                } catch (XMLStreamException e) {
+                    finish();
+                    throw new UncheckedIOException(new IOException(e.getLocalizedMessage(), e));
+                }
+            }
+            if (next == null && pending != null) {
+                if (pendingRowNumber > returnedRows + 1) {
+                    next = EMPTY_ROW;
+                } else {
+                    next = pending;
+                    pending = null;
+                }
+                returnedRows++;
+            }
+            return next != null;
+        }
+
+        @Override
+        public Object[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Object[] row = next;
+            next = null;
+            return row;
+        }
+
+        private Object[] readRow() throws XMLStreamException {
+            Object[] values = null;
+            int size = 0;
+            int col = -1;
+            String type = null;
+            String text = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if ("row".equals(name)) {
+                        String reference = reader.getAttributeValue(null, "r");
+                        pendingRowNumber = reference == null ? Math.max(pendingRowNumber, returnedRows) + 1
+                                : Integer.parseInt(reference.trim());
+                        values = new Object[16];
+                        size = 0;
+                        col = -1;
+                    } else if ("c".equals(name) && values != null) {
+                        String reference = reader.getAttributeValue(null, "r");
+                        col = reference == null ? col + 1 : columnIndex(reference);
+                        type = reader.getAttributeValue(null, "t");
+                        text = null;
+                    } else if ("v".equals(name)) {
+                        text = reader.getElementText();
+                    } else if ("t".equals(name) && "inlineStr".equals(type)) {
+                        text = text == null ? reader.getElementText() : text + reader.getElementText();
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if ("c".equals(name) && values != null) {
+                        Object value = valueOf(type, text);
+                        if (value != null) {
+                            if (col >= values.length) {
+                                values = Arrays.copyOf(values, Math.max(values.length << 1, col + 1));
+                            }
+                            values[col] = value;
+                            size = Math.max(size, col + 1);
+                        }
+                    } else if ("row".equals(name) && values != null) {
+                        return Arrays.copyOf(values, size);
+                    }
+                }
+            }
+            finish();
+            return null;
+        }
+
+        private Object valueOf(String type, String text) {
+            if (text == null || text.isEmpty()) {
+                return null;
+            }
+            if ("s".equals(type)) {
+                return sharedStrings.get(Integer.parseInt(text.trim()));
+            } else if ("b".equals(type)) {
+                return "1".equals(text.trim()) || "true".equalsIgnoreCase(text.trim());
+            } else if ("inlineStr".equals(type) || "str".equals(type) || "e".equals(type)) {
+                return text;
+            }
+            try {
+                return Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                return text;
+            }
+        }
+
+        private void finish() {
+            finished = true;
+            try {
+                reader.close();
+                inputStream.close();
+            } catch (XMLStreamException | IOException ignore) {
+                // 读取已经结束，关闭失败不影响结果
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package io.milkwang.util.excel.writer;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 在内存中记录一个sheet渲染好的单元格，之后再按顺序回放到真正的WorkbookWriter<br/>
+ * 多个sheet可以在不同线程中分别渲染到各自的SheetBuffer，最后只有回放这一步需要串行
+ * <ul>
+ *     <li>数字单元格直接存为double，文本单元格存为String，不会产生Col这样的中间对象</li>
+ *     <li>只能记录一个sheet，close不做任何事情</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+public class SheetBuffer implements WorkbookWriter {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final int maxRowsPerSheet;
+    private String name;
+    private int rowCount;
+    private int cellCount;
+    /**
+     * 每一行第一个单元格在cell数组中的下标
+     */
+    private int[] rowStarts = new int[INITIAL_CAPACITY];
+    private int[] cols = new int[INITIAL_CAPACITY];
+    /**
+     * 文本单元格的值，为null表示这是一个数字单元格
+     */
+    private String[] labels = new String[INITIAL_CAPACITY];
+    private double[] numbers = new double[INITIAL_CAPACITY];
+
+    /**
+     * @param maxRowsPerSheet 与最终写入器保持一致的最大行数
+     */
+    public SheetBuffer(int maxRowsPerSheet) {
+        this.maxRowsPerSheet = maxRowsPerSheet;
+    }
+
+    @Override
+    public int maxRowsPerSheet() {
+        return maxRowsPerSheet;
+    }
+
+    @Override
+    public void startSheet(String name) throws IOException {
+        if (this.name != null) {
+            throw new IOException("sheet buffer can only hold one sheet");
+        }
+        this.name = name;
+    }
+
+    @Override
+    public void startRow() {
+        if (rowCount == rowStarts.length) {
+            rowStarts = Arrays.copyOf(rowStarts, rowCount << 1);
+        }
+        rowStarts[rowCount++] = cellCount;
+    }
+
+    @Override
+    public void writeLabel(int col, String text) {
+        ensureCellCapacity();
+        cols[cellCount] = col;
+        labels[cellCount] = text;
+        cellCount++;
+    }
+
+    @Override
+    public void writeNumber(int col, double number) {
+        ensureCellCapacity();
+        cols[cellCount] = col;
+        numbers[cellCount] = number;
+        cellCount++;
+    }
+
+    @Override
+    public void endRow() {
+    }
+
+    @Override
+    public void endSheet() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * 将记录的sheet完整写入目标写入器
+     *
+     * @param writer 目标写入器
+     */
+    public void replayTo(WorkbookWriter writer) throws IOException {
+        writer.startSheet(name);
+        for (int row = 0; row < rowCount; row++) {
+            int end = row + 1 < rowCount ? rowStarts[row + 1] : cellCount;
+            writer.startRow();
+            for (int cell = rowStarts[row]; cell < end; cell++) {
+                if (labels[cell] != null) {
+                    writer.writeLabel(cols[cell], labels[cell]);
+                } else {
+                    writer.writeNumber(cols[cell], numbers[cell]);
+                }
+            }
+            writer.endRow();
+        }
+        writer.endSheet();
+    }
+
+    private void ensureCellCapacity() {
+        if (cellCount == cols.length) {
+            int capacity = cellCount << 1;
+            cols = Arrays.copyOf(cols, capacity);
+            labels = Arrays.copyOf(labels, capacity);
+            numbers = Arrays.copyOf(numbers, capacity);
+        }
+    }
+}
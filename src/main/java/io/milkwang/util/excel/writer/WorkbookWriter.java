@@ -0,0 +1,64 @@
+package io.milkwang.util.excel.writer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 按顺序输出workbook的底层写入器，调用顺序：
+ * <pre>
+ * startSheet -> (startRow -> writeLabel/writeNumber...)* -> endSheet -> ... -> close
+ * </pre>
+ * 行和列都从0开始，同一行内列号需要递增，值为null的单元格直接跳过即可
+ *
+ * @author nethunder
+ */
+public interface WorkbookWriter extends Closeable {
+    /**
+     * 单个sheet最多可以写入的行数，包含表头
+     */
+    int maxRowsPerSheet();
+
+    /**
+     * 开始一个新的sheet，上一个sheet需要先endSheet
+     *
+     * @param name sheet名字
+     */
+    void startSheet(String name) throws IOException;
+
+    /**
+     * 开始新的一行
+     */
+    void startRow() throws IOException;
+
+    /**
+     * 写入文本单元格
+     *
+     * @param col  列号
+     * @param text 文本
+     */
+    void writeLabel(int col, String text) throws IOException;
+
+    /**
+     * 写入数字单元格
+     *
+     * @param col    列号
+     * @param number 数字
+     */
+    void writeNumber(int col, double number) throws IOException;
+
+    /**
+     * 结束当前行
+     */
+    void endRow() throws IOException;
+
+    /**
+     * 结束当前sheet
+     */
+    void endSheet() throws IOException;
+
+    /**
+     * 输出workbook剩余的内容，不会关闭外部传入的OutputStream
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,88 @@
+package io.milkwang.util.excel.writer;
+
+import jxl.Workbook;
+import jxl.write.Label;
+import jxl.write.Number;
+import jxl.write.WritableCell;
+import jxl.write.WritableSheet;
+import jxl.write.WritableWorkbook;
+import jxl.write.WriteException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 基于jxl输出.xls，jxl会在内存中保留所有单元格直到close
+ *
+ * @author nethunder
+ */
+public class XlsWorkbookWriter implements WorkbookWriter {
+    /**
+     * xls单个sheet的最大行数
+     */
+    private static final int MAX_ROWS_PER_SHEET = 65536;
+
+    private final WritableWorkbook book;
+    private WritableSheet sheet;
+    private int row;
+
+    public XlsWorkbookWriter(OutputStream outputStream) throws IOException {
+        this.book = Workbook.createWorkbook(outputStream);
+    }
+
+    @Override
+    public int maxRowsPerSheet() {
+        return MAX_ROWS_PER_SHEET;
+    }
+
+    @Override
+    public void startSheet(String name) {
+        this.sheet = book.createSheet(name, book.getNumberOfSheets());
+        this.row = -1;
+    }
+
+    @Override
+    public void startRow() {
+        row++;
+    }
+
+    @Override
+    public void writeLabel(int col, String text) throws IOException {
+        addCell(new Label(col, row, text));
+    }
+
+    @Override
+    public void writeNumber(int col, double number) throws IOException {
+        addCell(new Number(col, row, number));
+    }
+
+    @Override
+    public void endRow() {
+    }
+
+    @Override
+    public void endSheet() {
+        this.sheet = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            book.write();
+        } finally {
+            try {
+                book.close();
+            } catch (WriteException e) {
+                throw new IOException(e.getLocalizedMessage(), e);
+            }
+        }
+    }
+
+    private void addCell(WritableCell cell) throws IOException {
+        try {
+            sheet.addCell(cell);
+        } catch (WriteException e) {
+            throw new IOException(e.getLocalizedMessage(), e);
+        }
+    }
+}
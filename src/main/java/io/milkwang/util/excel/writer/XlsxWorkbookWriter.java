@@ -0,0 +1,314 @@
+package io.milkwang.util.excel.writer;
+
+import com.google.common.collect.Lists;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 流式输出.xlsx(OOXML)，sheet的xml边生成边写入ZipOutputStream，不会在内存中保留行数据
+ * <ul>
+ *     <li>文本使用sharedStrings去重，去重表的大小有上限，超出后新出现的文本改为inlineStr直接写在单元格里</li>
+ *     <li>workbook.xml、sharedStrings.xml等元数据在close时写入</li>
+ *     <li>sheet名字清理、截断后与已有的重复(不区分大小写)时加上" (2)"这样的后缀</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+public class XlsxWorkbookWriter implements WorkbookWriter {
+    /**
+     * xlsx单个sheet的最大行数
+     */
+    private static final int MAX_ROWS_PER_SHEET = 1048576;
+    /**
+     * 默认最多去重的文本个数
+     */
+    public static final int DEFAULT_SHARED_STRINGS_LIMIT = 100000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int SHEET_NAME_MAX_LENGTH = 31;
+    private static final String[] COLUMN_NAMES = new String[1024];
+
+    private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+    private static final String NS_MAIN = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String NS_RELATIONSHIPS = "http://schemas.openxmlformats.org/package/2006/relationships";
+    private static final String NS_DOC_RELATIONSHIPS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    static {
+        for (int i = 0; i < COLUMN_NAMES.length; i++) {
+            COLUMN_NAMES[i] = computeColumnName(i);
+        }
+    }
+
+    private final ZipOutputStream zip;
+    private final Writer out;
+    private final int sharedStringsLimit;
+    private final Map<String, Integer> sharedStrings = new HashMap<>();
+    private final List<String> sharedStringList = new ArrayList<>();
+    private final List<String> sheetNames = Lists.newArrayList();
+    private final Set<String> usedSheetNames = new HashSet<>();
+    private long sharedStringRefs;
+    private String rowNumber;
+    private int row;
+    private boolean inSheet;
+
+    public XlsxWorkbookWriter(OutputStream outputStream) {
+        this(outputStream, DEFAULT_SHARED_STRINGS_LIMIT);
+    }
+
+    /**
+     * @param outputStream       目标流，close时不会关闭
+     * @param sharedStringsLimit 最多去重的文本个数，决定了去重表占用内存的上限
+     */
+    public XlsxWorkbookWriter(OutputStream outputStream, int sharedStringsLimit) {
+        this.zip = new ZipOutputStream(new FilterOutputStream(outputStream) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                // 外部传入的流由调用方关闭
+                flush();
+            }
+        });
+        this.out = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.sharedStringsLimit = sharedStringsLimit;
+    }
+
+    @Override
+    public int maxRowsPerSheet() {
+        return MAX_ROWS_PER_SHEET;
+    }
+
+    @Override
+    public void startSheet(String name) throws IOException {
+        sheetNames.add(uniqueSheetName(sanitizeSheetName(name)));
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + sheetNames.size() + ".xml"));
+        out.write(XML_HEADER);
+        out.write("<worksheet xmlns=\"" + NS_MAIN + "\"><sheetData>");
+        this.row = 0;
+        this.inSheet = true;
+    }
+
+    @Override
+    public void startRow() throws IOException {
+        row++;
+        rowNumber = Integer.toString(row);
+        out.write("<row r=\"");
+        out.write(rowNumber);
+        out.write("\">");
+    }
+
+    @Override
+    public void writeLabel(int col, String text) throws IOException {
+        Integer index = sharedStrings.get(text);
+        if (index == null && sharedStrings.size() < sharedStringsLimit) {
+            index = sharedStringList.size();
+            sharedStrings.put(text, index);
+            sharedStringList.add(text);
+        }
+        startCell(col);
+        if (index != null) {
+            sharedStringRefs++;
+            out.write(" t=\"s\"><v>");
+            out.write(Integer.toString(index));
+            out.write("</v></c>");
+        } else {
+            out.write(" t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+            writeEscaped(text);
+            out.write("</t></is></c>");
+        }
+    }
+
+    @Override
+    public void writeNumber(int col, double number) throws IOException {
+        startCell(col);
+        out.write("><v>");
+        long integral = (long) number;
+        if (integral == number && Math.abs(number) < 1e15) {
+            out.write(Long.toString(integral));
+        } else {
+            out.write(Double.toString(number));
+        }
+        out.write("</v></c>");
+    }
+
+    @Override
+    public void endRow() throws IOException {
+        out.write("</row>");
+    }
+
+    @Override
+    public void endSheet() throws IOException {
+        out.write("</sheetData></worksheet>");
+        out.flush();
+        zip.closeEntry();
+        this.inSheet = false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (inSheet) {
+            endSheet();
+        }
+        if (sheetNames.isEmpty()) {
+            // xlsx至少需要一个sheet
+            startSheet("Sheet1");
+            endSheet();
+        }
+        writeSharedStrings();
+        writeEntry("xl/styles.xml", "<styleSheet xmlns=\"" + NS_MAIN + "\">"
+                + "<fonts count=\"1\"><font><sz val=\"11\"/><name val=\"Calibri\"/></font></fonts>"
+                + "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill><fill><patternFill patternType=\"gray125\"/></fill></fills>"
+                + "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>"
+                + "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>"
+                + "<cellXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/></cellXfs>"
+                + "<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>"
+                + "</styleSheet>");
+
+        StringBuilder workbook = new StringBuilder("<workbook xmlns=\"" + NS_MAIN + "\" xmlns:r=\"" + NS_DOC_RELATIONSHIPS + "\"><sheets>");
+        StringBuilder workbookRels = new StringBuilder("<Relationships xmlns=\"" + NS_RELATIONSHIPS + "\">");
+        StringBuilder contentTypes = new StringBuilder("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+                + "<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>"
+                + "<Override PartName=\"/xl/sharedStrings.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sharedStrings+xml\"/>");
+        for (int i = 1; i <= sheetNames.size(); i++) {
+            workbook.append("<sheet name=\"").append(escape(sheetNames.get(i - 1)))
+                    .append("\" sheetId=\"").append(i).append("\" r:id=\"rId").append(i).append("\"/>");
+            workbookRels.append("<Relationship Id=\"rId").append(i)
+                    .append("\" Type=\"" + NS_DOC_RELATIONSHIPS + "/worksheet\" Target=\"worksheets/sheet").append(i).append(".xml\"/>");
+            contentTypes.append("<Override PartName=\"/xl/worksheets/sheet").append(i)
+                    .append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+        }
+        int next = sheetNames.size() + 1;
+        workbook.append("</sheets></workbook>");
+        workbookRels.append("<Relationship Id=\"rId").append(next)
+                .append("\" Type=\"" + NS_DOC_RELATIONSHIPS + "/styles\" Target=\"styles.xml\"/>")
+                .append("<Relationship Id=\"rId").append(next + 1)
+                .append("\" Type=\"" + NS_DOC_RELATIONSHIPS + "/sharedStrings\" Target=\"sharedStrings.xml\"/>")
+                .append("</Relationships>");
+        contentTypes.append("</Types>");
+
+        writeEntry("xl/workbook.xml", workbook.toString());
+        writeEntry("xl/_rels/workbook.xml.rels", workbookRels.toString());
+        writeEntry("_rels/.rels", "<Relationships xmlns=\"" + NS_RELATIONSHIPS + "\">"
+                + "<Relationship Id=\"rId1\" Type=\"" + NS_DOC_RELATIONSHIPS + "/officeDocument\" Target=\"xl/workbook.xml\"/>"
+                + "</Relationships>");
+        writeEntry("[Content_Types].xml", contentTypes.toString());
+        out.flush();
+        zip.close();
+    }
+
+    private void startCell(int col) throws IOException {
+        out.write("<c r=\"");
+        out.write(columnName(col));
+        out.write(rowNumber);
+        out.write('"');
+    }
+
+    private void writeSharedStrings() throws IOException {
+        zip.putNextEntry(new ZipEntry("xl/sharedStrings.xml"));
+        out.write(XML_HEADER);
+        out.write("<sst xmlns=\"" + NS_MAIN + "\" count=\"" + sharedStringRefs + "\" uniqueCount=\"" + sharedStringList.size() + "\">");
+        for (String text : sharedStringList) {
+            out.write("<si><t xml:space=\"preserve\">");
+            writeEscaped(text);
+            out.write("</t></si>");
+        }
+        out.write("</sst>");
+        out.flush();
+        zip.closeEntry();
+        sharedStrings.clear();
+        sharedStringList.clear();
+    }
+
+    private void writeEntry(String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        out.write(XML_HEADER);
+        out.write(content);
+        out.flush();
+        zip.closeEntry();
+    }
+
+    private void writeEscaped(String text) throws IOException {
+        int start = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            String replacement;
+            if (c == '<') {
+                replacement = "&lt;";
+            } else if (c == '>') {
+                replacement = "&gt;";
+            } else if (c == '&') {
+                replacement = "&amp;";
+            } else if (c == '"') {
+                replacement = "&quot;";
+            } else if (c < 0x20 && c != '\t' && c != '\n' && c != '\r') {
+                // xml 1.0不允许的控制字符直接丢弃
+                replacement = "";
+            } else {
+                continue;
+            }
+            out.write(text, start, i - start);
+            out.write(replacement);
+            start = i + 1;
+        }
+        out.write(text, start, text.length() - start);
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    /**
+     * Excel不允许重复的sheet名字(不区分大小写)，重复时加上后缀，加上后缀后仍然不超过31个字符
+     */
+    private String uniqueSheetName(String name) {
+        String unique = name;
+        for (int n = 2; !usedSheetNames.add(unique.toLowerCase(Locale.ROOT)); n++) {
+            String suffix = " (" + n + ")";
+            unique = name.substring(0, Math.min(name.length(), SHEET_NAME_MAX_LENGTH - suffix.length())) + suffix;
+        }
+        return unique;
+    }
+
+    /**
+     * Excel的sheet名字不能超过31个字符，且不能包含[]:*?/\
+     */
+    private static String sanitizeSheetName(String name) {
+        if (name == null || name.isEmpty()) {
+            return "Sheet";
+        }
+        String sanitized = name.replaceAll("[\\[\\]:*?/\\\\]", "_");
+        return sanitized.length() > SHEET_NAME_MAX_LENGTH ? sanitized.substring(0, SHEET_NAME_MAX_LENGTH) : sanitized;
+    }
+
+    private static String columnName(int col) {
+        return col < COLUMN_NAMES.length ? COLUMN_NAMES[col] : computeColumnName(col);
+    }
+
+    private static String computeColumnName(int col) {
+        StringBuilder name = new StringBuilder();
+        for (int i = col + 1; i > 0; i = (i - 1) / 26) {
+            name.append((char) ('A' + (i - 1) % 26));
+        }
+        return name.reverse().toString();
+    }
+}
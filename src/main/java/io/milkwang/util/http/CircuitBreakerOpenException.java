@@ -0,0 +1,23 @@
+package io.milkwang.util.http;
+
+import java.io.IOException;
+
+/**
+ * 熔断器打开时直接拒绝的请求，与其他请求失败一样记录在HttpHelper中
+ *
+ * @author nethunder
+ */
+public class CircuitBreakerOpenException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final String host;
+
+    public CircuitBreakerOpenException(String host) {
+        super("circuit breaker open: " + host);
+        this.host = host;
+    }
+
+    public String getHost() {
+        return host;
+    }
+}
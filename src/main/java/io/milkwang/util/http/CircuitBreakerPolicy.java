@@ -0,0 +1,238 @@
+package io.milkwang.util.http;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按host熔断，下游持续失败时快速失败，不再占用连接和线程等待超时
+ * <pre>
+ * CircuitBreakerPolicy breaker = new CircuitBreakerPolicy(0.5, 20, 100, 10, TimeUnit.SECONDS);
+ * HttpClients.register("order", new HttpClientConfig().addInterceptor(breaker));
+ * </pre>
+ * <ul>
+ *     <li>CLOSED：统计最近windowSize次调用，至少minimumCalls次且失败率达到阈值时打开</li>
+ *     <li>OPEN：直接抛出CircuitBreakerOpenException，经过openDuration后进入半开</li>
+ *     <li>HALF_OPEN：只放行probeCalls个探测请求，全部成功后关闭，任意一个失败重新打开</li>
+ *     <li>IOException和5xx状态码记为失败，调用方主动取消的请求不计入</li>
+ *     <li>调用的结果只在放行时的状态下统计，状态切换之前放行、之后才结束的调用不计入</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+public class CircuitBreakerPolicy implements Interceptor {
+    private static final int DEFAULT_PROBE_CALLS = 3;
+
+    private final double failureRateThreshold;
+    private final int minimumCalls;
+    private final int windowSize;
+    private final long openNanos;
+    private final int probeCalls;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+
+    /**
+     * @param failureRateThreshold 失败率阈值，0~1
+     * @param minimumCalls         统计窗口内至少有这么多次调用才会打开
+     * @param windowSize           统计最近多少次调用
+     * @param openDuration         打开后多久进入半开
+     * @param unit                 时间单位
+     */
+    public CircuitBreakerPolicy(double failureRateThreshold, int minimumCalls, int windowSize, long openDuration, TimeUnit unit) {
+        this(failureRateThreshold, minimumCalls, windowSize, openDuration, unit, DEFAULT_PROBE_CALLS);
+    }
+
+    /**
+     * @param probeCalls 半开时放行的探测请求数
+     */
+    public CircuitBreakerPolicy(double failureRateThreshold, int minimumCalls, int windowSize, long openDuration, TimeUnit unit,
+                                int probeCalls) {
+        if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize || probeCalls < 1) {
+            throw new IllegalArgumentException("invalid circuit breaker window: minimumCalls=" + minimumCalls
+                    + ", windowSize=" + windowSize + ", probeCalls=" + probeCalls);
+        }
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = minimumCalls;
+        this.windowSize = windowSize;
+        this.openNanos = unit.toNanos(openDuration);
+        this.probeCalls = probeCalls;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        HttpUrl url = chain.request().url();
+        String host = url.host() + ":" + url.port();
+        CircuitBreaker breaker = breakers.computeIfAbsent(host, key -> new CircuitBreaker());
+        long permit = breaker.tryAcquire();
+        if (permit < 0) {
+            rejected.incrementAndGet();
+            throw new CircuitBreakerOpenException(host);
+        }
+        Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (IOException | RuntimeException e) {
+            if (chain.call().isCanceled()) {
+                breaker.release(permit);
+            } else {
+                breaker.record(permit, false);
+            }
+            throw e;
+        }
+        breaker.record(permit, response.code() < 500);
+        return response;
+    }
+
+    /**
+     * @param host "host:port"
+     * @return 还没有调用过这个host时为CLOSED
+     */
+    public State getState(String host) {
+        CircuitBreaker breaker = breakers.get(host);
+        return breaker == null ? State.CLOSED : breaker.getState();
+    }
+
+    /**
+     * 所有调用过的host("host:port")的状态
+     */
+    public Map<String, State> getStates() {
+        Map<String, State> states = new LinkedHashMap<>();
+        breakers.forEach((host, breaker) -> states.put(host, breaker.getState()));
+        return Collections.unmodifiableMap(states);
+    }
+
+    /**
+     * 被拒绝的请求数
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * 熔断器打开的次数
+     */
+    public long getOpened() {
+        return opened.get();
+    }
+
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        /**
+         * 正常放行
+         */
+        CLOSED,
+        /**
+         * 拒绝所有请求
+         */
+        OPEN,
+        /**
+         * 放行少量探测请求
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * 单个host的熔断器，调用耗时远大于加锁的开销，直接用synchronized<br/>
+     * 每次切换状态generation加1，放行时返回当时的generation，结束时不一致的结果直接丢弃
+     */
+    private final class CircuitBreaker {
+        private final boolean[] outcomes = new boolean[windowSize];
+        private State state = State.CLOSED;
+        private long generation;
+        private int index;
+        private int count;
+        private int failures;
+        private long openedAt;
+        private int probesIssued;
+        private int probesSucceeded;
+
+        synchronized State getState() {
+            return state;
+        }
+
+        /**
+         * @return 放行时为当前的generation，拒绝时为-1
+         */
+        synchronized long tryAcquire() {
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return -1;
+                }
+                transition(State.HALF_OPEN);
+                probesIssued = 0;
+                probesSucceeded = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesIssued >= probeCalls) {
+                    return -1;
+                }
+                probesIssued++;
+            }
+            return generation;
+        }
+
+        /**
+         * 请求被取消，归还半开时的探测名额
+         */
+        synchronized void release(long permit) {
+            if (permit == generation && state == State.HALF_OPEN && probesIssued > 0) {
+                probesIssued--;
+            }
+        }
+
+        synchronized void record(long permit, boolean success) {
+            if (permit != generation) {
+                // 放行之后状态已经切换，例如关闭时放行、半开后才结束的调用不能当作探测结果
+                return;
+            }
+            if (state == State.HALF_OPEN) {
+                if (!success) {
+                    open();
+                } else if (++probesSucceeded >= probeCalls) {
+                    transition(State.CLOSED);
+                    index = 0;
+                    count = 0;
+                    failures = 0;
+                }
+                return;
+            }
+            if (count == windowSize) {
+                if (!outcomes[index]) {
+                    failures--;
+                }
+            } else {
+                count++;
+            }
+            outcomes[index] = success;
+            if (!success) {
+                failures++;
+            }
+            index = (index + 1) % windowSize;
+            if (count >= minimumCalls && failures >= failureRateThreshold * count) {
+                open();
+            }
+        }
+
+        private void open() {
+            transition(State.OPEN);
+            openedAt = System.nanoTime();
+            opened.incrementAndGet();
+        }
+
+        private void transition(State next) {
+            state = next;
+            generation++;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package io.milkwang.util.http;
+
+import okhttp3.Handshake;
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 合并并发的相同请求：方法、url、请求体都相同的请求同时只发出一个，其余调用等待并共享同一个响应，
+ * 用于缓存过期时大量线程同时请求同一个下游接口
+ * <pre>
+ * CoalescingPolicy coalescing = new CoalescingPolicy();
+ * HttpHelper.create(url).coalesce(coalescing).methodGet().getData(User.class);
+ * // 查询类的POST接口
+ * new CoalescingPolicy().methods("GET", "POST");
+ * </pre>
+ * <b><i>Note:</i></b>
+ * <ul>
+ *     <li>只合并同时在执行的请求，请求结束后不保留结果；需要缓存时使用ResponseCache</li>
+ *     <li>默认只合并GET、HEAD；Authorization、Cookie请求头不同的请求不会合并，其他影响响应的请求头用keyHeaders设置</li>
+ *     <li>请求体或响应体超过maxBodyBytes时不合并</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+public class CoalescingPolicy implements Interceptor {
+    private static final long DEFAULT_MAX_BODY_BYTES = 1024 * 1024;
+
+    private final SingleFlight<Key, SharedResponse> flights = new SingleFlight<>();
+    private volatile Set<String> methods = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("GET", "HEAD")));
+    private volatile List<String> keyHeaders = Collections.unmodifiableList(Arrays.asList("Authorization", "Cookie"));
+    private volatile long maxBodyBytes = DEFAULT_MAX_BODY_BYTES;
+    private final AtomicLong calls = new AtomicLong();
+
+    /**
+     * 需要合并的请求方法，默认GET、HEAD
+     */
+    public CoalescingPolicy methods(String... methods) {
+        Set<String> upper = new HashSet<>();
+        for (String method : methods) {
+            upper.add(method.toUpperCase(Locale.ROOT));
+        }
+        this.methods = Collections.unmodifiableSet(upper);
+        return this;
+    }
+
+    /**
+     * 值不同时不合并的请求头，默认Authorization、Cookie
+     */
+    public CoalescingPolicy keyHeaders(String... headers) {
+        this.keyHeaders = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(headers)));
+        return this;
+    }
+
+    /**
+     * 可以合并的请求体、响应体大小上限，默认1M
+     */
+    public CoalescingPolicy maxBodyBytes(long maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+        return this;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!methods.contains(request.method())) {
+            return chain.proceed(request);
+        }
+        byte[] body = null;
+        RequestBody requestBody = request.body();
+        if (requestBody != null) {
+            if (requestBody.isOneShot() || requestBody.isDuplex() || requestBody.contentLength() > maxBodyBytes) {
+                return chain.proceed(request);
+            }
+            Buffer buffer = new Buffer();
+            requestBody.writeTo(buffer);
+            if (buffer.size() > maxBodyBytes) {
+                return chain.proceed(request);
+            }
+            body = buffer.readByteArray();
+            // 已经序列化过的请求体直接发送，不再序列化一次
+            request = request.newBuilder().method(request.method(), RequestBody.create(body, requestBody.contentType())).build();
+        }
+        calls.incrementAndGet();
+        Request sent = request;
+        Response[] unbuffered = new Response[1];
+        SharedResponse shared = flights.execute(new Key(sent, body, keyHeaders), chain.call(),
+                () -> fetch(chain, sent, unbuffered));
+        if (unbuffered[0] != null) {
+            return unbuffered[0];
+        }
+        if (shared == null) {
+            // 共享的响应太大，自己发出请求
+            return chain.proceed(sent);
+        }
+        return shared.toResponse(chain.request());
+    }
+
+    /**
+     * 经过合并处理的请求数
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * 实际发给下游的请求数
+     */
+    public long getExecuted() {
+        return flights.getExecuted();
+    }
+
+    /**
+     * 被合并、共享其他请求响应的请求数
+     */
+    public long getCollapsed() {
+        return flights.getShared();
+    }
+
+    private SharedResponse fetch(Chain chain, Request request, Response[] unbuffered) throws IOException {
+        Response response = chain.proceed(request);
+        ResponseBody peeked = response.peekBody(maxBodyBytes + 1);
+        if (peeked.contentLength() > maxBodyBytes) {
+            unbuffered[0] = response;
+            return null;
+        }
+        byte[] body = peeked.bytes();
+        response.close();
+        return new SharedResponse(response, body);
+    }
+
+    /**
+     * 合并的依据：方法、url、keyHeaders、请求体内容
+     */
+    private static final class Key {
+        private final String method;
+        private final String url;
+        private final List<String> headerValues;
+        private final MediaType contentType;
+        private final byte[] body;
+        private final int hash;
+
+        Key(Request request, byte[] body, List<String> keyHeaders) {
+            this.method = request.method();
+            this.url = request.url().toString();
+            List<String> values = new ArrayList<>(keyHeaders.size());
+            for (String name : keyHeaders) {
+                values.add(String.join("\n", request.headers(name)));
+            }
+            this.headerValues = values;
+            this.contentType = request.body() != null ? request.body().contentType() : null;
+            this.body = body;
+            int h = method.hashCode();
+            h = 31 * h + url.hashCode();
+            h = 31 * h + headerValues.hashCode();
+            h = 31 * h + (contentType != null ? contentType.hashCode() : 0);
+            this.hash = 31 * h + Arrays.hashCode(body);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && method.equals(other.method) && url.equals(other.url)
+                    && headerValues.equals(other.headerValues)
+                    && (contentType == null ? other.contentType == null : contentType.equals(other.contentType))
+                    && Arrays.equals(body, other.body);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * 读完响应体的响应，每个调用方各自生成一个Response
+     */
+    private static final class SharedResponse {
+        private final Protocol protocol;
+        private final int code;
+        private final String message;
+        private final Handshake handshake;
+        private final Headers headers;
+        private final byte[] body;
+        private final MediaType contentType;
+        private final long sentAtMillis;
+        private final long receivedAtMillis;
+
+        SharedResponse(Response response, byte[] body) {
+            this.protocol = response.protocol();
+            this.code = response.code();
+            this.message = response.message();
+            this.handshake = response.handshake();
+            this.headers = response.headers();
+            this.body = body;
+            ResponseBody responseBody = response.body();
+            this.contentType = responseBody != null ? responseBody.contentType() : null;
+            this.sentAtMillis = response.sentRequestAtMillis();
+            this.receivedAtMillis = response.receivedResponseAtMillis();
+        }
+
+        Response toResponse(Request request) {
+            return new Response.Builder()
+                    .request(request)
+                    .protocol(protocol)
+                    .code(code)
+                    .message(message)
+                    .handshake(handshake)
+                    .headers(headers)
+                    .body(ResponseBody.create(body, contentType))
+                    .sentRequestAtMillis(sentAtMillis)
+                    .receivedResponseAtMillis(receivedAtMillis)
+                    .build();
+        }
+    }
+}
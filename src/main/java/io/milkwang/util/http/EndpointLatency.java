@@ -0,0 +1,118 @@
+package io.milkwang.util.http;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个host、路径模板的耗时统计快照，时间单位为毫秒
+ *
+ * @author nethunder
+ */
+public class EndpointLatency {
+    private final String host;
+    private final String path;
+    private final long count;
+    private final long failures;
+    private final double meanMillis;
+    private final double p50Millis;
+    private final double p90Millis;
+    private final double p99Millis;
+    private final double maxMillis;
+    private final double dnsP99Millis;
+    private final double connectP99Millis;
+    private final double tlsP99Millis;
+    private final double ttfbP99Millis;
+
+    EndpointLatency(String host, String path, long failures, LatencyHistogram total, LatencyHistogram dns,
+                    LatencyHistogram connect, LatencyHistogram tls, LatencyHistogram ttfb) {
+        TimeUnit unit = TimeUnit.MILLISECONDS;
+        this.host = host;
+        this.path = path;
+        this.count = total.getCount();
+        this.failures = failures;
+        this.meanMillis = total.getMean(unit);
+        this.p50Millis = total.getPercentile(0.5, unit);
+        this.p90Millis = total.getPercentile(0.9, unit);
+        this.p99Millis = total.getPercentile(0.99, unit);
+        this.maxMillis = total.getMax(unit);
+        this.dnsP99Millis = dns.getPercentile(0.99, unit);
+        this.connectP99Millis = connect.getPercentile(0.99, unit);
+        this.tlsP99Millis = tls.getPercentile(0.99, unit);
+        this.ttfbP99Millis = ttfb.getPercentile(0.99, unit);
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * 完成的调用数，包括失败的调用
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * 连接失败、超时等IOException的次数，不包括主动取消的调用
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP90Millis() {
+        return p90Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    /**
+     * 只统计发生了DNS查询的调用
+     */
+    public double getDnsP99Millis() {
+        return dnsP99Millis;
+    }
+
+    /**
+     * 只统计新建了连接的调用
+     */
+    public double getConnectP99Millis() {
+        return connectP99Millis;
+    }
+
+    /**
+     * 只统计新建了https连接的调用
+     */
+    public double getTlsP99Millis() {
+        return tlsP99Millis;
+    }
+
+    /**
+     * 从调用开始到收到响应头
+     */
+    public double getTtfbP99Millis() {
+        return ttfbP99Millis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s%s count=%d, failures=%d, mean=%.2fms, p50=%.2fms, p90=%.2fms, p99=%.2fms, max=%.2fms",
+                host, path, count, failures, meanMillis, p50Millis, p90Millis, p99Millis, maxMillis);
+    }
+}
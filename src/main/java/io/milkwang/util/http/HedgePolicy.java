@@ -0,0 +1,124 @@
+package io.milkwang.util.http;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 对冲请求：请求超过最近耗时的某个分位数仍未返回时，再发出一个相同的请求，先返回的结果生效，另一个被取消
+ * <pre>
+ * HedgePolicy hedge = new HedgePolicy(0.95, 20, 1000, TimeUnit.MILLISECONDS);
+ * HttpHelper.create(url).hedge(hedge).methodGet().getData(User.class);
+ * </pre>
+ * <b><i>Note:</i></b>
+ * <ul>
+ *     <li>同一个HedgePolicy的请求共享耗时统计，应该按接口分别创建</li>
+ *     <li>统计的样本不足时使用maxDelay；第一个请求在对冲前失败时立即发出对冲请求</li>
+ *     <li>只对幂等、请求体可以重复发送的请求生效，最多多发一倍的请求</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+public class HedgePolicy {
+    private static final int WINDOW_SIZE = 512;
+    private static final int MIN_SAMPLES = 32;
+    /**
+     * 每记录这么多个样本重新计算一次分位数
+     */
+    private static final int RECOMPUTE_INTERVAL = 32;
+
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final long[] samples = new long[WINDOW_SIZE];
+    private int index;
+    private int count;
+    private volatile long delayNanos;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedged = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    /**
+     * @param percentile 超过最近耗时的这个分位数时发出对冲请求，例如0.95
+     * @param minDelay   对冲等待时间的下限
+     * @param maxDelay   对冲等待时间的上限，样本不足时使用
+     * @param unit       时间单位
+     */
+    public HedgePolicy(double percentile, long minDelay, long maxDelay, TimeUnit unit) {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1: " + percentile);
+        }
+        this.percentile = percentile;
+        this.minDelayNanos = unit.toNanos(minDelay);
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.delayNanos = maxDelayNanos;
+    }
+
+    /**
+     * 当前的对冲等待时间
+     */
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 使用过对冲策略的请求数
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * 发出的对冲请求数
+     */
+    public long getHedged() {
+        return hedged.get();
+    }
+
+    /**
+     * 对冲请求先返回的次数
+     */
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    long delayNanos() {
+        return delayNanos;
+    }
+
+    void onRequest() {
+        requests.incrementAndGet();
+    }
+
+    void onHedge() {
+        hedged.incrementAndGet();
+    }
+
+    void onHedgeWin() {
+        hedgeWins.incrementAndGet();
+    }
+
+    /**
+     * 记录一次请求从发出到拿到结果的耗时
+     */
+    void record(long nanos) {
+        long[] sorted = null;
+        synchronized (this) {
+            samples[index] = nanos;
+            index = (index + 1) % WINDOW_SIZE;
+            if (count < WINDOW_SIZE) {
+                count++;
+            }
+            if (count >= MIN_SAMPLES && index % RECOMPUTE_INTERVAL == 0) {
+                sorted = Arrays.copyOf(samples, count);
+            }
+        }
+        if (sorted != null) {
+            // 排序在锁外进行
+            Arrays.sort(sorted);
+            long value = sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))];
+            delayNanos = Math.max(minDelayNanos, Math.min(maxDelayNanos, value));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package io.milkwang.util.http;
+
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 执行一次对冲请求，先拿到响应的调用生效，之后取消其余调用
+ *
+ * @author nethunder
+ */
+final class HedgedCall {
+    private final HedgePolicy policy;
+    private final Request request;
+    /**
+     * 发起一次调用，返回的future读完响应体时完成，被异常完成时取消调用
+     */
+    private final Function<Request, CompletableFuture<Response>> callFactory;
+    private final CompletableFuture<Response> result = new CompletableFuture<>();
+    private final List<CompletableFuture<Response>> calls = new ArrayList<>(2);
+    private final long start = System.nanoTime();
+    private int running;
+    private boolean hedged;
+
+    HedgedCall(HedgePolicy policy, Request request, Function<Request, CompletableFuture<Response>> callFactory) {
+        this.policy = policy;
+        this.request = request;
+        this.callFactory = callFactory;
+    }
+
+    /**
+     * @return 读完响应体时完成，所有调用都失败时以最后一个异常结束
+     */
+    CompletableFuture<Response> start(ScheduledExecutorService scheduler) {
+        policy.onRequest();
+        synchronized (this) {
+            running++;
+        }
+        launch(false);
+        ScheduledFuture<?> timer = scheduler.schedule(this::hedge, policy.delayNanos(), TimeUnit.NANOSECONDS);
+        result.whenComplete((response, e) -> {
+            timer.cancel(false);
+            cancelCalls();
+        });
+        return result;
+    }
+
+    void cancel() {
+        result.completeExceptionally(new IOException("Canceled"));
+    }
+
+    private void hedge() {
+        synchronized (this) {
+            if (hedged || result.isDone()) {
+                return;
+            }
+            hedged = true;
+            running++;
+        }
+        policy.onHedge();
+        launch(true);
+    }
+
+    private void launch(boolean isHedge) {
+        CompletableFuture<Response> call = callFactory.apply(request);
+        synchronized (this) {
+            calls.add(call);
+        }
+        if (result.isDone()) {
+            // 已经被取消
+            call.completeExceptionally(new IOException("Canceled"));
+        }
+        call.whenComplete((response, e) -> {
+            if (e == null) {
+                if (result.complete(response)) {
+                    policy.record(System.nanoTime() - start);
+                    if (isHedge) {
+                        policy.onHedgeWin();
+                    }
+                }
+                return;
+            }
+            boolean hedgeNow;
+            boolean allFailed;
+            synchronized (this) {
+                running--;
+                hedgeNow = !hedged && !result.isDone();
+                allFailed = running == 0 && hedged;
+            }
+            if (hedgeNow) {
+                // 第一个请求在对冲前就失败了，不再等待
+                hedge();
+            } else if (allFailed) {
+                result.completeExceptionally(e);
+            }
+        });
+    }
+
+    private void cancelCalls() {
+        List<CompletableFuture<Response>> current;
+        synchronized (this) {
+            current = new ArrayList<>(calls);
+        }
+        for (CompletableFuture<Response> call : current) {
+            call.completeExceptionally(new IOException("Canceled"));
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package io.milkwang.util.http;
+
+import io.milkwang.framework.tracer.TraceContext;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 把逐个发起的下游调用合并成小批次，用于循环中按id逐个调用接口(N+1)的场景
+ * <pre>
+ * // 下游有批量接口：攒够100个或者等待5ms后调用一次
+ * HttpBatcher&lt;Long, User&gt; users = HttpBatcher.bulk((List&lt;Long&gt; ids) -&gt; HttpHelper.create(url)
+ *         .methodPostWithBody(JSON.toJSONString(ids))
+ *         .getListAsync(User.class)
+ *         .thenApply(list -&gt; list.stream().collect(Collectors.toMap(User::getId, u -&gt; u))));
+ * CompletableFuture&lt;User&gt; user = users.submit(42L);
+ *
+ * // 下游只有单个接口：同时最多执行8个
+ * HttpBatcher&lt;Long, User&gt; single = HttpBatcher.perItem((Long id) -&gt; HttpHelper.create(url + id)
+ *         .methodGet().getDataAsync(User.class)).maxConcurrency(8);
+ * CompletableFuture&lt;List&lt;User&gt;&gt; all = single.submitAll(ids);
+ * </pre>
+ * <b><i>Note:</i></b>
+ * <ul>
+ *     <li>loader在提交的线程或者HttpHelper的定时线程中调用，只能发起异步请求，不能阻塞</li>
+ *     <li>同一批次中相同的key只请求一次；批量接口的结果中没有某个key时，这个key的结果为null</li>
+ *     <li>一个批次的请求使用第一个提交的调用的追踪信息(requestId等)</li>
+ *     <li>maxConcurrency限制同时执行的批量请求数(bulk)或者单个请求数(perItem)，超过的排队等待</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+public final class HttpBatcher<K, V> implements AutoCloseable {
+    private static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    private static final long DEFAULT_MAX_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final int DEFAULT_MAX_CONCURRENCY = 8;
+
+    private final Function<List<K>, CompletableFuture<Map<K, V>>> bulkLoader;
+    private final Function<K, CompletableFuture<V>> itemLoader;
+    private volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private volatile long maxDelayNanos = DEFAULT_MAX_DELAY_NANOS;
+    private volatile int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+    private final Object lock = new Object();
+    private Batch current;
+    private boolean closed;
+    private int running;
+    private final Queue<Supplier<CompletableFuture<?>>> waiting = new ArrayDeque<>();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong calls = new AtomicLong();
+
+    private HttpBatcher(Function<List<K>, CompletableFuture<Map<K, V>>> bulkLoader, Function<K, CompletableFuture<V>> itemLoader) {
+        this.bulkLoader = bulkLoader;
+        this.itemLoader = itemLoader;
+    }
+
+    /**
+     * 每个批次调用一次批量接口
+     *
+     * @param loader 参数为批次中不重复的key，返回key到结果的映射
+     */
+    public static <K, V> HttpBatcher<K, V> bulk(Function<List<K>, CompletableFuture<Map<K, V>>> loader) {
+        return new HttpBatcher<>(loader, null);
+    }
+
+    /**
+     * 每个key调用一次单个接口，限制同时执行的数量
+     */
+    public static <K, V> HttpBatcher<K, V> perItem(Function<K, CompletableFuture<V>> loader) {
+        return new HttpBatcher<>(null, loader);
+    }
+
+    /**
+     * 批次中不重复的key达到这个数量时立即提交，默认100
+     */
+    public HttpBatcher<K, V> maxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive: " + maxBatchSize);
+        }
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    /**
+     * 批次中第一个key最多等待的时间，默认5ms
+     */
+    public HttpBatcher<K, V> maxDelay(long maxDelay, TimeUnit unit) {
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        return this;
+    }
+
+    /**
+     * 同时执行的请求数，默认8
+     */
+    public HttpBatcher<K, V> maxConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+        }
+        this.maxConcurrency = maxConcurrency;
+        return this;
+    }
+
+    /**
+     * @return 请求失败时以请求的异常结束；关闭后提交时以IllegalStateException结束
+     */
+    public CompletableFuture<V> submit(K key) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        Batch ready = null;
+        synchronized (lock) {
+            if (closed) {
+                future.completeExceptionally(new IllegalStateException("batcher closed"));
+                return future;
+            }
+            submitted.incrementAndGet();
+            if (current == null) {
+                current = new Batch();
+                if (maxDelayNanos > 0) {
+                    Batch batch = current;
+                    batch.timer = HttpHelper.SCHEDULER.schedule(() -> flush(batch), maxDelayNanos, TimeUnit.NANOSECONDS);
+                }
+            }
+            current.add(key, future);
+            if (current.size() >= maxBatchSize || maxDelayNanos <= 0) {
+                ready = current;
+                current = null;
+            }
+        }
+        if (ready != null) {
+            dispatch(ready);
+        }
+        return future;
+    }
+
+    /**
+     * 提交多个key，结果与keys的顺序一致
+     */
+    public CompletableFuture<List<V>> submitAll(Collection<K> keys) {
+        List<CompletableFuture<V>> futures = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            futures.add(submit(key));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<V> values = new ArrayList<>(futures.size());
+            for (CompletableFuture<V> future : futures) {
+                values.add(future.join());
+            }
+            return values;
+        });
+    }
+
+    /**
+     * 立即提交当前的批次
+     */
+    public void flush() {
+        Batch ready;
+        synchronized (lock) {
+            ready = current;
+            current = null;
+        }
+        if (ready != null) {
+            dispatch(ready);
+        }
+    }
+
+    /**
+     * 提交当前的批次，之后不再接受新的key；已经提交的请求继续执行
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+        }
+        flush();
+    }
+
+    /**
+     * 提交的key数
+     */
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    /**
+     * 与同一批次中已有的key相同、没有单独请求的key数
+     */
+    public long getDeduplicated() {
+        return deduplicated.get();
+    }
+
+    /**
+     * 提交的批次数
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * 调用loader的次数，即发给下游的请求数
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    private void flush(Batch batch) {
+        synchronized (lock) {
+            if (current != batch) {
+                // 已经因为数量提交
+                return;
+            }
+            current = null;
+        }
+        dispatch(batch);
+    }
+
+    private void dispatch(Batch batch) {
+        if (batch.timer != null) {
+            batch.timer.cancel(false);
+        }
+        batches.incrementAndGet();
+        if (bulkLoader != null) {
+            List<K> keys = new ArrayList<>(batch.futures.keySet());
+            submitLimited(() -> {
+                CompletableFuture<Map<K, V>> result = call(batch.context, () -> bulkLoader.apply(keys));
+                return result.whenComplete((values, e) -> {
+                    for (Map.Entry<K, List<CompletableFuture<V>>> entry : batch.futures.entrySet()) {
+                        complete(entry.getValue(), values != null ? values.get(entry.getKey()) : null, e);
+                    }
+                });
+            });
+        } else {
+            for (Map.Entry<K, List<CompletableFuture<V>>> entry : batch.futures.entrySet()) {
+                submitLimited(() -> call(batch.context, () -> itemLoader.apply(entry.getKey()))
+                        .whenComplete((value, e) -> complete(entry.getValue(), value, e)));
+            }
+        }
+    }
+
+    private <T> CompletableFuture<T> call(TraceContext context, Supplier<CompletableFuture<T>> loader) {
+        calls.incrementAndGet();
+        CompletableFuture<T> result;
+        TraceContext.Scope scope = context.attach();
+        try {
+            result = loader.get();
+        } catch (RuntimeException e) {
+            result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+        } finally {
+            scope.close();
+        }
+        if (result == null) {
+            result = new CompletableFuture<>();
+            result.completeExceptionally(new NullPointerException("loader returned null"));
+        }
+        return result;
+    }
+
+    private void complete(List<CompletableFuture<V>> futures, V value, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        for (CompletableFuture<V> future : futures) {
+            if (cause != null) {
+                future.completeExceptionally(cause);
+            } else {
+                future.complete(value);
+            }
+        }
+    }
+
+    private void submitLimited(Supplier<CompletableFuture<?>> task) {
+        synchronized (lock) {
+            if (running >= maxConcurrency) {
+                waiting.add(task);
+                return;
+            }
+            running++;
+        }
+        run(task);
+    }
+
+    /**
+     * 同步完成的任务在循环中继续执行下一个，不递归
+     */
+    private void run(Supplier<CompletableFuture<?>> task) {
+        while (task != null) {
+            CompletableFuture<?> result = task.get();
+            if (!result.isDone()) {
+                result.whenComplete((value, e) -> run(next()));
+                return;
+            }
+            task = next();
+        }
+    }
+
+    private Supplier<CompletableFuture<?>> next() {
+        synchronized (lock) {
+            Supplier<CompletableFuture<?>> task = waiting.poll();
+            if (task == null) {
+                running--;
+            }
+            return task;
+        }
+    }
+
+    private final class Batch {
+        private final TraceContext context = TraceContext.capture();
+        private final Map<K, List<CompletableFuture<V>>> futures = new LinkedHashMap<>();
+        private ScheduledFuture<?> timer;
+
+        void add(K key, CompletableFuture<V> future) {
+            List<CompletableFuture<V>> list = futures.get(key);
+            if (list == null) {
+                list = new ArrayList<>(1);
+                futures.put(key, list);
+            } else {
+                deduplicated.incrementAndGet();
+            }
+            list.add(future);
+        }
+
+        int size() {
+            return futures.size();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package io.milkwang.util.http;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 注册到HttpClients中的OkHttpClient配置，没有设置的项沿用共享的默认值
+ * <pre>
+ * HttpClients.registerHost("order.internal", new HttpClientConfig()
+ *         .connectTimeout(200, TimeUnit.MILLISECONDS)
+ *         .readTimeout(2, TimeUnit.SECONDS)
+ *         .connectionPool(50, 5, TimeUnit.MINUTES)
+ *         .maxRequestsPerHost(100)
+ *         .trace(true));
+ * </pre>
+ * <b><i>Note:</i></b>
+ * <ul>
+ *     <li>没有设置连接池、并发数时与其他客户端共用同一个连接池和Dispatcher，设置后使用独立的</li>
+ *     <li>https默认通过ALPN协商HTTP/2，一个连接上可以同时执行多个请求，maxRequestsPerHost可以设置得更大</li>
+ *     <li>http2PriorKnowledge用于明文的h2c服务，此时不再支持HTTP/1.1</li>
+ *     <li>默认不写入追踪请求头(用户名、milkCode等)，只对内部服务的host用trace(true)开启</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+public class HttpClientConfig {
+    private static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+    private static final long DEFAULT_KEEP_ALIVE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private long connectTimeoutMillis = -1;
+    private long readTimeoutMillis = -1;
+    private long writeTimeoutMillis = -1;
+    private long callTimeoutMillis = -1;
+    private int maxIdleConnections = -1;
+    private long keepAliveMillis = -1;
+    private int maxRequests = -1;
+    private int maxRequestsPerHost = -1;
+    private boolean http2 = true;
+    private boolean http2PriorKnowledge;
+    private boolean trace;
+    private HttpMetrics metrics;
+    private final List<Interceptor> interceptors = new ArrayList<>();
+
+    public HttpClientConfig connectTimeout(long timeout, TimeUnit unit) {
+        this.connectTimeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    public HttpClientConfig readTimeout(long timeout, TimeUnit unit) {
+        this.readTimeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    public HttpClientConfig writeTimeout(long timeout, TimeUnit unit) {
+        this.writeTimeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * 整个调用的超时时间，包括连接、发送请求、等待和读取响应体，0表示不限制
+     */
+    public HttpClientConfig callTimeout(long timeout, TimeUnit unit) {
+        this.callTimeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * 使用独立的连接池
+     *
+     * @param maxIdleConnections 最多保留的空闲连接数
+     * @param keepAlive          空闲连接保留的时间
+     * @param unit               时间单位
+     */
+    public HttpClientConfig connectionPool(int maxIdleConnections, long keepAlive, TimeUnit unit) {
+        this.maxIdleConnections = maxIdleConnections;
+        this.keepAliveMillis = unit.toMillis(keepAlive);
+        return this;
+    }
+
+    /**
+     * 异步请求最多同时执行的数量，设置后使用独立的Dispatcher
+     */
+    public HttpClientConfig maxRequests(int maxRequests) {
+        this.maxRequests = maxRequests;
+        return this;
+    }
+
+    /**
+     * 异步请求对同一个host最多同时执行的数量，设置后使用独立的Dispatcher
+     */
+    public HttpClientConfig maxRequestsPerHost(int maxRequestsPerHost) {
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        return this;
+    }
+
+    /**
+     * 是否允许https协商HTTP/2，默认允许；false时只使用HTTP/1.1
+     */
+    public HttpClientConfig http2(boolean http2) {
+        this.http2 = http2;
+        return this;
+    }
+
+    /**
+     * 明文直接使用HTTP/2(h2c)，只能用于确定支持h2c的服务
+     */
+    public HttpClientConfig http2PriorKnowledge(boolean http2PriorKnowledge) {
+        this.http2PriorKnowledge = http2PriorKnowledge;
+        return this;
+    }
+
+    /**
+     * 是否写入追踪请求头，默认不写入，只对内部服务开启，见{@link TraceInterceptor}；不写入时仍然记录调用耗时
+     */
+    public HttpClientConfig trace(boolean trace) {
+        this.trace = trace;
+        return this;
+    }
+
+    /**
+     * 使用单独的耗时统计，默认记录在HttpMetrics.getDefault()中
+     */
+    public HttpClientConfig metrics(HttpMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    public HttpClientConfig addInterceptor(Interceptor interceptor) {
+        this.interceptors.add(interceptor);
+        return this;
+    }
+
+    /**
+     * 基于共享的客户端创建，未设置的项沿用base的配置
+     */
+    OkHttpClient build(OkHttpClient base) {
+        OkHttpClient.Builder builder = base.newBuilder();
+        if (connectTimeoutMillis >= 0) {
+            builder.connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        if (readTimeoutMillis >= 0) {
+            builder.readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        if (writeTimeoutMillis >= 0) {
+            builder.writeTimeout(writeTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        if (callTimeoutMillis >= 0) {
+            builder.callTimeout(callTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        if (maxIdleConnections >= 0 || keepAliveMillis >= 0) {
+            builder.connectionPool(new ConnectionPool(
+                    maxIdleConnections >= 0 ? maxIdleConnections : DEFAULT_MAX_IDLE_CONNECTIONS,
+                    keepAliveMillis >= 0 ? keepAliveMillis : DEFAULT_KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS));
+        }
+        if (maxRequests > 0 || maxRequestsPerHost > 0) {
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(maxRequests > 0 ? maxRequests : base.dispatcher().getMaxRequests());
+            dispatcher.setMaxRequestsPerHost(maxRequestsPerHost > 0 ? maxRequestsPerHost : base.dispatcher().getMaxRequestsPerHost());
+            builder.dispatcher(dispatcher);
+        }
+        if (http2PriorKnowledge) {
+            builder.protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+        } else if (!http2) {
+            builder.protocols(Collections.singletonList(Protocol.HTTP_1_1));
+        } else {
+            builder.protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+        }
+        if (metrics != null) {
+            builder.eventListenerFactory(metrics);
+        }
+        builder.addInterceptor(new TraceInterceptor(trace));
+        for (Interceptor interceptor : interceptors) {
+            builder.addInterceptor(interceptor);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,122 @@
+package io.milkwang.util.http;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 共享的OkHttpClient注册表，HttpHelper和ImageUtils都从这里获取客户端
+ * <ul>
+ *     <li>所有客户端由同一个基础客户端派生，默认共用连接池、Dispatcher和线程</li>
+ *     <li>按名字注册的客户端通过HttpHelper.client(name)使用；按host注册的客户端对发往该host的请求自动生效</li>
+ *     <li>追踪请求头中有用户信息，默认不发送；内部服务用registerHost(host, new HttpClientConfig().trace(true))开启</li>
+ *     <li>重新注册会替换原来的客户端，已经发出的请求不受影响</li>
+ *     <li>调用耗时默认记录在HttpMetrics.getDefault()中</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+public final class HttpClients {
+    /**
+     * HttpHelper默认使用的客户端：连接超时1秒，读超时60秒，不写入追踪请求头，内部服务用registerHost开启
+     */
+    public static final String DEFAULT = "default";
+    /**
+     * ImageUtils拉取图片使用的客户端：连接超时3秒，读超时60秒，不写入追踪请求头
+     */
+    public static final String IMAGE = "image";
+
+    /**
+     * 异步请求同时执行的数量，OkHttp默认每个host只有5个，fanOut到同一个服务时会排队
+     */
+    private static final int MAX_REQUESTS = 128;
+    private static final int MAX_REQUESTS_PER_HOST = 32;
+
+    private static final OkHttpClient BASE = newBaseClient();
+    private static final Map<String, OkHttpClient> CLIENTS = new ConcurrentHashMap<>();
+    private static final Map<String, OkHttpClient> HOST_CLIENTS = new ConcurrentHashMap<>();
+
+    static {
+        register(DEFAULT, new HttpClientConfig()
+                .connectTimeout(1, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS));
+        register(IMAGE, new HttpClientConfig()
+                .connectTimeout(3, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS));
+    }
+
+    private HttpClients() {
+    }
+
+    /**
+     * 按名字注册客户端，可以用DEFAULT、IMAGE替换默认的配置
+     *
+     * @return 创建的客户端
+     */
+    public static OkHttpClient register(String name, HttpClientConfig config) {
+        OkHttpClient client = config.build(BASE);
+        CLIENTS.put(name, client);
+        return client;
+    }
+
+    /**
+     * 为某个host注册客户端，HttpHelper发往这个host的请求在没有指定客户端时使用它
+     *
+     * @param host 域名或ip，不含端口
+     * @return 创建的客户端
+     */
+    public static OkHttpClient registerHost(String host, HttpClientConfig config) {
+        OkHttpClient client = config.build(BASE);
+        HOST_CLIENTS.put(host.toLowerCase(), client);
+        return client;
+    }
+
+    public static void unregisterHost(String host) {
+        HOST_CLIENTS.remove(host.toLowerCase());
+    }
+
+    /**
+     * @throws IllegalArgumentException 没有注册这个名字
+     */
+    public static OkHttpClient get(String name) {
+        OkHttpClient client = CLIENTS.get(name);
+        if (client == null) {
+            throw new IllegalArgumentException("http client not registered: " + name);
+        }
+        return client;
+    }
+
+    public static OkHttpClient getDefault() {
+        return CLIENTS.get(DEFAULT);
+    }
+
+    /**
+     * 发往host的请求使用的客户端，没有为这个host注册时返回默认客户端
+     *
+     * @param host 域名或ip，HttpUrl.host()已经是小写
+     */
+    public static OkHttpClient forHost(String host) {
+        if (!HOST_CLIENTS.isEmpty()) {
+            OkHttpClient client = HOST_CLIENTS.get(host);
+            if (client != null) {
+                return client;
+            }
+        }
+        return CLIENTS.get(DEFAULT);
+    }
+
+    private static OkHttpClient newBaseClient() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(MAX_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+        return new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool())
+                .eventListenerFactory(HttpMetrics.getDefault())
+                .build();
+    }
+}
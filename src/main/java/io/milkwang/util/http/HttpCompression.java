@@ -0,0 +1,181 @@
+package io.milkwang.util.http;
+
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.Okio;
+import okio.Source;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.zip.Deflater;
+
+/**
+ * 压缩请求体、解压响应体
+ * <pre>
+ * HttpCompression compression = new HttpCompression().minRequestBytes(4096);
+ * HttpHelper.create(url).compress(compression).methodPostWithBody(json).result();
+ * // 或者对整个客户端生效
+ * HttpClients.registerHost("report.internal", new HttpClientConfig().addInterceptor(compression));
+ * </pre>
+ * <b><i>Note:</i></b>
+ * <ul>
+ *     <li>请求体不小于minRequestBytes或者长度未知时用gzip压缩，边压缩边发送；下游必须支持Content-Encoding: gzip的请求，
+ *     Tomcat、Spring默认不支持，需要先确认</li>
+ *     <li>brotli只有解码器有纯Java实现(org.brotli:dec)，请求体只使用gzip</li>
+ *     <li>请求没有设置Accept-Encoding时声明gzip，classpath上有org.brotli:dec时同时声明br，响应体在读取时边读边解压</li>
+ *     <li>调用方自己设置了Content-Encoding、Accept-Encoding时不做处理</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+public class HttpCompression implements Interceptor {
+    private static final long DEFAULT_MIN_REQUEST_BYTES = 1024;
+    private static final Constructor<? extends InputStream> BROTLI_INPUT_STREAM = findBrotliInputStream();
+
+    private volatile long minRequestBytes = DEFAULT_MIN_REQUEST_BYTES;
+    private volatile int level = Deflater.BEST_SPEED;
+    private volatile boolean compressRequests = true;
+
+    /**
+     * 请求体达到这个大小才压缩，默认1K；太小的请求体压缩后几乎不会变小
+     */
+    public HttpCompression minRequestBytes(long minRequestBytes) {
+        this.minRequestBytes = minRequestBytes;
+        return this;
+    }
+
+    /**
+     * gzip压缩级别，默认1(BEST_SPEED)：json在级别1时已经能压缩到很小，更高的级别主要增加CPU耗时
+     */
+    public HttpCompression level(int level) {
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("invalid gzip level: " + level);
+        }
+        this.level = level;
+        return this;
+    }
+
+    /**
+     * 是否压缩请求体，默认压缩；false时只解压响应体
+     */
+    public HttpCompression compressRequests(boolean compressRequests) {
+        this.compressRequests = compressRequests;
+        return this;
+    }
+
+    /**
+     * classpath上是否有brotli解码器(org.brotli:dec)
+     */
+    public static boolean isBrotliSupported() {
+        return BROTLI_INPUT_STREAM != null;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Request.Builder builder = null;
+        RequestBody body = request.body();
+        if (compressRequests && body != null && !body.isDuplex() && request.header("Content-Encoding") == null) {
+            long length = body.contentLength();
+            if (length == -1 || length >= minRequestBytes) {
+                builder = request.newBuilder()
+                        .header("Content-Encoding", "gzip")
+                        .method(request.method(), gzip(body, level));
+            }
+        }
+        boolean decode = request.header("Accept-Encoding") == null && request.header("Range") == null;
+        if (decode) {
+            builder = builder != null ? builder : request.newBuilder();
+            builder.header("Accept-Encoding", isBrotliSupported() ? "br, gzip" : "gzip");
+        }
+        Response response = chain.proceed(builder != null ? builder.build() : request);
+        return decode ? decode(response) : response;
+    }
+
+    private static RequestBody gzip(RequestBody body, int level) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return body.contentType();
+            }
+
+            @Override
+            public long contentLength() {
+                return -1;
+            }
+
+            @Override
+            public boolean isOneShot() {
+                return body.isOneShot();
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                GzipSink gzipSink = new GzipSink(sink);
+                gzipSink.deflater().setLevel(level);
+                try (BufferedSink gzip = Okio.buffer(gzipSink)) {
+                    body.writeTo(gzip);
+                }
+            }
+        };
+    }
+
+    /**
+     * 与OkHttp自动解压gzip的处理一致：去掉Content-Encoding、Content-Length，读取时解压
+     */
+    private static Response decode(Response response) throws IOException {
+        String encoding = response.header("Content-Encoding");
+        ResponseBody body = response.body();
+        if (encoding == null || body == null || body.contentLength() == 0
+                || "HEAD".equals(response.request().method()) || response.code() == 204 || response.code() == 304) {
+            return response;
+        }
+        Source decoded;
+        if ("gzip".equalsIgnoreCase(encoding)) {
+            decoded = new GzipSource(body.source());
+        } else if ("br".equalsIgnoreCase(encoding) && isBrotliSupported()) {
+            decoded = Okio.source(newBrotliInputStream(body.source().inputStream()));
+        } else {
+            return response;
+        }
+        Headers headers = response.headers().newBuilder()
+                .removeAll("Content-Encoding")
+                .removeAll("Content-Length")
+                .build();
+        return response.newBuilder()
+                .headers(headers)
+                .body(ResponseBody.create(Okio.buffer(decoded), body.contentType(), -1))
+                .build();
+    }
+
+    private static InputStream newBrotliInputStream(InputStream inputStream) throws IOException {
+        try {
+            return BROTLI_INPUT_STREAM.newInstance(inputStream);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } catch (ReflectiveOperationException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Constructor<? extends InputStream> findBrotliInputStream() {
+        try {
+            Class<?> clazz = Class.forName("org.brotli.dec.BrotliInputStream");
+            return (Constructor<? extends InputStream>) clazz.getConstructor(InputStream.class);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
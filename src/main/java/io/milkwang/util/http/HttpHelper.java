@@ -2,29 +2,57 @@ package io.milkwang.util.http;
 
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson2.util.ParameterizedTypeImpl;
+import io.milkwang.framework.tracer.TraceContext;
 import okhttp3.*;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Sink;
+import okio.Source;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Type;
 import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
- * 圈外Http请求辅助工具
+ * 圈外Http请求辅助工具<br/>
+ * 发往开启了追踪的host(HttpClientConfig.trace)的请求会自动带上当前的requestId、milkCode、username请求头，见{@link TraceInterceptor}；
+ * 使用的客户端、超时和连接池在{@link HttpClients}中配置；
+ * 重试、对冲和熔断见{@link RetryPolicy}、{@link HedgePolicy}、{@link CircuitBreakerPolicy}，响应缓存见{@link ResponseCache}，
+ * 合并并发的相同请求见{@link CoalescingPolicy}，
+ * 请求体压缩见{@link HttpCompression}
  */
 public class HttpHelper {
     private static final Logger logger = LoggerFactory.getLogger(HttpHelper.class);
-    private static final int CONNECTION_TIMEOUT = 1;
-    private static final int READ_TIMEOUT = 60;
-    private static final OkHttpClient CLIENT = new OkHttpClient.Builder()
-            .connectTimeout(CONNECTION_TIMEOUT, TimeUnit.SECONDS)
-            .readTimeout(READ_TIMEOUT, TimeUnit.SECONDS)
-            .build();
+    /**
+     * fanOut到期时取消还没有结束的请求(包括还在Dispatcher中排队、没有开始计时的请求)、发出对冲请求、HttpBatcher按时间提交，
+     * 任务都不能阻塞
+     */
+    static final ScheduledThreadPoolExecutor SCHEDULER = newScheduler();
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
     /**
      * 用户名
      */
@@ -54,6 +82,15 @@ public class HttpHelper {
     private Response response;
     private Throwable throwable;
     private Consumer<HttpHelper> beforeExecute;
+    private volatile CompletableFuture<Response> pending;
+    private OkHttpClient client;
+    private long callTimeoutMillis;
+    private ResponseCache responseCache;
+    private CoalescingPolicy coalescingPolicy;
+    private RetryPolicy retryPolicy;
+    private HttpCompression compression;
+    private HedgePolicy hedgePolicy;
+    private volatile HedgedCall hedgedCall;
 
     /**
      * 构建辅助类
@@ -82,7 +119,7 @@ public class HttpHelper {
         return this;
     }
 
-    private static String getValueEncoded(String value) {
+    static String getValueEncoded(String value) {
         if (value == null) return "null";
         String newValue = value.replace("\n", "");
         for (int i = 0, length = newValue.length(); i < length; i++) {
@@ -111,6 +148,87 @@ public class HttpHelper {
         return this;
     }
 
+    /**
+     * 使用HttpClients中按名字注册的客户端，不指定时按请求的host选择
+     *
+     * @param name 客户端名字
+     * @return 辅助类
+     */
+    public HttpHelper client(String name) {
+        this.client = HttpClients.get(name);
+        return this;
+    }
+
+    /**
+     * 只对这一次请求生效的总超时时间，包括连接、发送请求、等待和读取响应体
+     *
+     * @return 辅助类
+     */
+    public HttpHelper timeout(long timeout, TimeUnit unit) {
+        this.callTimeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * 使用内存中的响应缓存，只对GET请求生效，缓存命中时不再经过重试和客户端配置的拦截器
+     *
+     * @return 辅助类
+     */
+    public HttpHelper cache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+        return this;
+    }
+
+    /**
+     * 合并同时在执行的相同请求，在响应缓存之后、重试之前执行
+     *
+     * @return 辅助类
+     */
+    public HttpHelper coalesce(CoalescingPolicy coalescingPolicy) {
+        this.coalescingPolicy = coalescingPolicy;
+        return this;
+    }
+
+    /**
+     * 失败时按策略重试，在客户端配置的拦截器之前执行，熔断器会统计每一次尝试；异步调用在调度线程中等待重试
+     *
+     * @return 辅助类
+     */
+    public HttpHelper retry(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    /**
+     * 压缩请求体、解压响应体，在重试之后执行，每次尝试重新压缩
+     *
+     * @return 辅助类
+     */
+    public HttpHelper compress(HttpCompression compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    /**
+     * 超过策略中的等待时间仍未返回时发出对冲请求，只对幂等、请求体可以重复发送的请求生效
+     *
+     * @return 辅助类
+     */
+    public HttpHelper hedge(HedgePolicy hedgePolicy) {
+        this.hedgePolicy = hedgePolicy;
+        return this;
+    }
+
+    /**
+     * 不写入requestId、milkCode、username等追踪请求头，客户端开启了追踪、但这个接口不应该看到用户信息时使用
+     *
+     * @return 辅助类
+     */
+    public HttpHelper disableTrace() {
+        this.builder.tag(TraceInterceptor.Skip.class, TraceInterceptor.Skip.INSTANCE);
+        return this;
+    }
+
     /**
      * 移除Header
      *
@@ -180,6 +298,95 @@ public class HttpHelper {
     }
 
 
+    /**
+     * 执行Post请求，请求体可以用{@link #streamBody}、{@link #fileBody}、{@link #channelBody}边读边发送
+     *
+     * @return 执行结果
+     */
+    public HttpHelper methodPost(RequestBody body) {
+        this.builder.post(body);
+        return this;
+    }
+
+    /**
+     * 执行Put请求，请求体可以用{@link #streamBody}、{@link #fileBody}、{@link #channelBody}边读边发送
+     *
+     * @return 执行结果
+     */
+    public HttpHelper methodPut(RequestBody body) {
+        this.builder.put(body);
+        return this;
+    }
+
+    /**
+     * 从输入流边读边发送的请求体，发送完后关闭输入流；只能发送一次，不会重试、对冲或合并
+     *
+     * @param contentLength 长度，未知时为-1，此时使用chunked编码
+     */
+    public static RequestBody streamBody(InputStream inputStream, MediaType mediaType, long contentLength) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return mediaType;
+            }
+
+            @Override
+            public long contentLength() {
+                return contentLength;
+            }
+
+            @Override
+            public boolean isOneShot() {
+                return true;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                // 直接读到Okio的segment中，不经过额外的byte[]
+                try (Source source = Okio.source(inputStream)) {
+                    sink.writeAll(source);
+                }
+            }
+        };
+    }
+
+    /**
+     * 从文件边读边发送的请求体，可以重复发送
+     */
+    public static RequestBody fileBody(Path path, MediaType mediaType) {
+        return RequestBody.create(path.toFile(), mediaType);
+    }
+
+    /**
+     * 发送文件中从position开始的count个字节，不改变channel的position，可以重复发送；channel由调用方关闭
+     */
+    public static RequestBody channelBody(FileChannel channel, long position, long count, MediaType mediaType) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return mediaType;
+            }
+
+            @Override
+            public long contentLength() {
+                return count;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                long current = position;
+                long end = position + count;
+                while (current < end) {
+                    long transferred = channel.transferTo(current, end - current, sink);
+                    if (transferred <= 0) {
+                        throw new EOFException("file channel ended at " + current + ", expected " + end);
+                    }
+                    current += transferred;
+                }
+            }
+        };
+    }
+
     /**
      * 构建请求信息
      *
@@ -189,15 +396,283 @@ public class HttpHelper {
         if (this.beforeExecute != null) {
             this.beforeExecute.accept(this);
         }
+        if (isHedged()) {
+            return executeHedged(TraceContext.capture()).join();
+        }
         Request request = this.builder.build();
         try {
-            this.response = CLIENT.newCall(request).execute();
+            this.response = newCall(request).execute();
         } catch (Exception e) {
             this.throwable = e;
         }
         return this;
     }
 
+    /**
+     * 异步执行请求，不占用当前线程，请求在OkHttp的线程中执行；追踪信息在调用时获取<br/>
+     * 与execute()一样，请求失败时future也正常完成，异常通过getResponse()/result()抛出
+     *
+     * @return 读完响应体或请求失败时完成
+     */
+    public CompletableFuture<HttpHelper> executeAsync() {
+        if (isHedged()) {
+            return executeHedged(TraceContext.capture());
+        }
+        return settle(startAsync(TraceContext.capture(), 0), 0);
+    }
+
+    /**
+     * 异步执行并读取响应体，请求失败时future异常完成
+     *
+     * @return 响应体
+     */
+    public CompletableFuture<String> resultAsync() {
+        return executeAsync().thenApply(HttpHelper::resultOrThrow);
+    }
+
+    public <T> CompletableFuture<T> getDataAsync(Class<T> clazz) {
+        return resultAsync().thenApply(result -> JSONObject.parseObject(result, clazz));
+    }
+
+    public <T> CompletableFuture<List<T>> getListAsync(Class<T> clazz) {
+        return resultAsync().thenApply(result -> JSONArray.parseArray(result, clazz));
+    }
+
+    /**
+     * 同时执行多个请求，耗时取决于最慢的一个而不是所有请求耗时之和
+     * <pre>
+     * List&lt;HttpHelper&gt; helpers = HttpHelper.fanOut(Arrays.asList(
+     *         HttpHelper.create(userUrl).methodGet(),
+     *         HttpHelper.create(orderUrl).methodGet()), 2, TimeUnit.SECONDS).join();
+     * User user = helpers.get(0).getData(User.class);
+     * </pre>
+     * 到期时还没有结束的请求会被取消，对应的HttpHelper中记录InterruptedIOException，其余请求的结果不受影响
+     *
+     * @param helpers 尚未执行的请求
+     * @param timeout 所有请求的总超时时间
+     * @param unit    时间单位
+     * @return 所有请求都结束时完成，顺序与helpers一致
+     */
+    public static CompletableFuture<List<HttpHelper>> fanOut(List<HttpHelper> helpers, long timeout, TimeUnit unit) {
+        long timeoutNanos = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + timeoutNanos;
+        TraceContext context = TraceContext.capture();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[helpers.size()];
+        for (int i = 0; i < futures.length; i++) {
+            HttpHelper helper = helpers.get(i);
+            futures[i] = helper.settle(helper.startAsync(context, timeoutNanos), deadline);
+        }
+        ScheduledFuture<?> expiry = SCHEDULER.schedule(() -> {
+            for (int i = 0; i < futures.length; i++) {
+                if (!futures[i].isDone()) {
+                    helpers.get(i).cancel();
+                }
+            }
+        }, timeoutNanos, TimeUnit.NANOSECONDS);
+        return CompletableFuture.allOf(futures).thenApply(ignored -> {
+            expiry.cancel(false);
+            return helpers;
+        });
+    }
+
+    /**
+     * @param timeoutNanos fanOut的总超时时间，每次调用的callTimeout不会超过它，没有时为0
+     */
+    private CompletableFuture<Response> startAsync(TraceContext context, long timeoutNanos) {
+        if (this.beforeExecute != null) {
+            this.beforeExecute.accept(this);
+        }
+        // 请求在OkHttp的线程中执行，TraceInterceptor从tag中读取追踪信息
+        Request request = this.builder.tag(TraceContext.class, context).build();
+        CompletableFuture<Response> future = callAsync(request, timeoutNanos);
+        this.pending = future;
+        return future;
+    }
+
+    /**
+     * 异步发起一次调用，需要重试时在SCHEDULER中等待，不占用OkHttp的线程
+     *
+     * @return 读完响应体时完成，被异常完成时取消调用
+     */
+    private CompletableFuture<Response> callAsync(Request request, long timeoutNanos) {
+        Function<Request, Call> callFactory = timeoutNanos == 0 ? this::newAsyncCall : req -> {
+            Call call = newAsyncCall(req);
+            long callTimeout = call.timeout().timeoutNanos();
+            if (callTimeout == 0 || callTimeout > timeoutNanos) {
+                call.timeout().timeout(timeoutNanos, TimeUnit.NANOSECONDS);
+            }
+            return call;
+        };
+        if (this.retryPolicy != null && this.retryPolicy.isRetryable(request)) {
+            return new RetryingCall(this.retryPolicy, request, callFactory, SCHEDULER).start();
+        }
+        return enqueueBuffered(callFactory.apply(request));
+    }
+
+    private boolean isHedged() {
+        if (this.hedgePolicy == null) {
+            return false;
+        }
+        // 只看builder中的方法和请求体，还没有执行beforeExecute
+        Request request = this.builder.build();
+        RequestBody body = request.body();
+        return RetryPolicy.isIdempotent(request.method()) && (body == null || !body.isOneShot());
+    }
+
+    /**
+     * 对冲请求都在OkHttp的线程中执行，失败时与execute()一样记录在throwable中
+     */
+    private CompletableFuture<HttpHelper> executeHedged(TraceContext context) {
+        if (this.beforeExecute != null) {
+            this.beforeExecute.accept(this);
+        }
+        Request request = this.builder.tag(TraceContext.class, context).build();
+        HedgedCall hedged = new HedgedCall(this.hedgePolicy, request, req -> callAsync(req, 0));
+        this.hedgedCall = hedged;
+        return settle(hedged.start(SCHEDULER), 0);
+    }
+
+    private Call newCall(Request request) {
+        return newCall(request, true);
+    }
+
+    /**
+     * 异步调用的重试由RetryingCall处理，不经过RetryPolicy拦截器
+     */
+    private Call newAsyncCall(Request request) {
+        return newCall(request, false);
+    }
+
+    private Call newCall(Request request, boolean withRetry) {
+        OkHttpClient current = this.client != null ? this.client : HttpClients.forHost(request.url().host());
+        RetryPolicy retry = withRetry ? this.retryPolicy : null;
+        if (this.responseCache != null || this.coalescingPolicy != null || retry != null || this.compression != null) {
+            OkHttpClient.Builder policyBuilder = current.newBuilder();
+            List<Interceptor> interceptors = policyBuilder.interceptors();
+            // 放在TraceInterceptor之后，每次尝试使用同一个requestId；依次为缓存、合并、重试、压缩
+            int index = !interceptors.isEmpty() && interceptors.get(0) instanceof TraceInterceptor ? 1 : 0;
+            if (this.responseCache != null) {
+                interceptors.add(index++, this.responseCache);
+            }
+            if (this.coalescingPolicy != null) {
+                interceptors.add(index++, this.coalescingPolicy);
+            }
+            if (retry != null) {
+                interceptors.add(index++, retry);
+            }
+            if (this.compression != null) {
+                interceptors.add(index, this.compression);
+            }
+            current = policyBuilder.build();
+        }
+        Call newCall = current.newCall(request);
+        if (this.callTimeoutMillis > 0) {
+            newCall.timeout().timeout(this.callTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        return newCall;
+    }
+
+    /**
+     * 把异步调用的结果记录到helper中，与execute()一样失败时也正常完成
+     *
+     * @param deadline fanOut的截止时间(System.nanoTime)，没有时为0
+     */
+    private CompletableFuture<HttpHelper> settle(CompletableFuture<Response> future, long deadline) {
+        return future.handle((result, e) -> {
+            if (e == null) {
+                this.response = result;
+                return this;
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (deadline != 0 && System.nanoTime() - deadline >= 0 && !(cause instanceof InterruptedIOException)) {
+                InterruptedIOException timeout = new InterruptedIOException("deadline exceeded: " + url);
+                timeout.initCause(cause);
+                this.throwable = timeout;
+            } else {
+                this.throwable = cause;
+            }
+            return this;
+        });
+    }
+
+    /**
+     * 异步执行一次调用
+     *
+     * @return 读完响应体时完成，被异常完成(取消、fanOut到期)时取消调用
+     */
+    static CompletableFuture<Response> enqueueBuffered(Call call) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try {
+                    future.complete(buffer(response));
+                } catch (IOException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        future.whenComplete((response, e) -> {
+            if (e != null) {
+                call.cancel();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 在OkHttp的线程中读完响应体，之后的解析不会阻塞调用方线程，fanOut到期取消请求也不会影响已经完成的结果
+     */
+    static Response buffer(Response response) throws IOException {
+        ResponseBody body = response.body();
+        if (body == null) {
+            return response;
+        }
+        try {
+            byte[] bytes = body.bytes();
+            return response.newBuilder().body(ResponseBody.create(bytes, body.contentType())).build();
+        } finally {
+            body.close();
+        }
+    }
+
+    private static String resultOrThrow(HttpHelper helper) {
+        try {
+            return helper.result();
+        } catch (Throwable e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * 取消正在执行的异步请求
+     */
+    public void cancel() {
+        CompletableFuture<Response> current = this.pending;
+        if (current != null) {
+            current.completeExceptionally(new IOException("Canceled"));
+        }
+        HedgedCall hedged = this.hedgedCall;
+        if (hedged != null) {
+            hedged.cancel();
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor newScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "http-helper-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
 
     /**
      * 获取原始的响应体
@@ -229,6 +704,48 @@ public class HttpHelper {
         return response;
     }
 
+    /**
+     * 把响应体边读边写到输出流中，内存中只保留Okio的几个segment，用于下载、转发大文件；输出流由调用方关闭<br/>
+     * 与result()一样不检查状态码；executeAsync、对冲请求会先把响应体读到内存中，大文件应该使用同步调用
+     *
+     * @return 写入的字节数
+     * @throws Throwable 请求异常或者读写失败
+     */
+    public long transferTo(OutputStream outputStream) throws Throwable {
+        return transfer(Okio.sink(outputStream));
+    }
+
+    /**
+     * 把响应体边读边写到channel中，channel由调用方关闭
+     *
+     * @return 写入的字节数
+     * @throws Throwable 请求异常或者读写失败
+     */
+    public long transferTo(WritableByteChannel channel) throws Throwable {
+        return transfer(Okio.sink(Channels.newOutputStream(channel)));
+    }
+
+    /**
+     * 把响应体写到文件中，文件已经存在时覆盖
+     *
+     * @return 写入的字节数
+     * @throws Throwable 请求异常或者读写失败
+     */
+    public long transferTo(Path path) throws Throwable {
+        try (OutputStream outputStream = Files.newOutputStream(path)) {
+            return transferTo(outputStream);
+        }
+    }
+
+    private long transfer(Sink sink) throws Throwable {
+        try (ResponseBody body = getResponse().body()) {
+            // segment直接从响应的缓冲区移动到sink，写出时使用segment中的数组
+            long length = body.source().readAll(sink);
+            sink.flush();
+            return length;
+        }
+    }
+
     /**
      * 根据圈外的接口规则，将返回值进行封装
      *
@@ -245,7 +762,7 @@ public class HttpHelper {
         try {
             result = response.body().string();
         } catch (IOException e) {
-            logger.error("[[function=execute]] exception e={}", throwable.getMessage());
+            logger.error("[[function=execute]] exception e={}", e.getMessage());
             return null;
         }
         return result;
@@ -261,28 +778,83 @@ public class HttpHelper {
         try {
             return result();
         } catch (Throwable e) {
-            logger.error("[[function=execute]] exception e={}", throwable.getMessage());
+            logger.error("[[function=execute]] exception e={}", e.getMessage());
             return null;
         }
     }
 
+    /**
+     * 解析响应体，直接从字节解析，不再先转换成String；请求失败时返回null
+     */
     public <T> T getData(Class<T> clazz) {
-        String result = resultNoThrow();
-        return JSONObject.parseObject(result, clazz);
+        return parseBody(clazz);
     }
 
+    /**
+     * 解析响应体中的数组，直接从字节解析；很大的数组可以使用{@link #iterateList(Class)}逐个读取
+     */
     public <T> List<T> getList(Class<T> clazz) {
-        String result = resultNoThrow();
-        return JSONArray.parseArray(result, clazz);
+        return parseBody(new ParameterizedTypeImpl(new Type[]{clazz}, null, List.class));
     }
 
     public JSONObject getData() {
-        String result = resultNoThrow();
-        return JSONObject.parseObject(result);
+        return parseBody(JSONObject.class);
     }
 
     public JSONArray getList() {
-        String result = resultNoThrow();
-        return JSONArray.parseArray(result);
+        return parseBody(JSONArray.class);
+    }
+
+    /**
+     * 边读取响应体边解析数组元素，内存中只保留当前元素，用完需要close
+     * <pre>
+     * try (JsonArrayIterator&lt;Order&gt; orders = HttpHelper.create(url).methodGet().iterateList(Order.class)) {
+     *     while (orders.hasNext()) {
+     *         handle(orders.next());
+     *     }
+     * }
+     * </pre>
+     *
+     * @return 请求失败时返回null
+     */
+    public <T> JsonArrayIterator<T> iterateList(Class<T> clazz) {
+        try {
+            return new JsonArrayIterator<>(getResponse().body().charStream(), clazz);
+        } catch (Throwable e) {
+            logger.error("[[function=execute]] exception e={}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 与先result()再JSON.parseObject结果一致，响应体为空时返回null；字符集同样取Content-Type，默认utf-8
+     */
+    private <T> T parseBody(Type type) {
+        ResponseBody body;
+        byte[] bytes;
+        try {
+            body = getResponse().body();
+            bytes = body.bytes();
+        } catch (Throwable e) {
+            logger.error("[[function=execute]] exception e={}", e.getMessage());
+            return null;
+        }
+        int offset = hasUtf8Bom(bytes) ? UTF8_BOM.length : 0;
+        if (bytes.length == offset) {
+            return null;
+        }
+        MediaType contentType = body.contentType();
+        Charset charset = contentType != null ? contentType.charset(StandardCharsets.UTF_8) : StandardCharsets.UTF_8;
+        if (!StandardCharsets.UTF_8.equals(charset) && !StandardCharsets.US_ASCII.equals(charset)
+                && !StandardCharsets.ISO_8859_1.equals(charset)) {
+            // fastjson只能直接解析这几种编码的字节，GBK等仍然先解码
+            return JSONObject.parseObject(new String(bytes, offset, bytes.length - offset, charset), type);
+        }
+        return JSONObject.parseObject(bytes, offset, bytes.length - offset, charset, type);
+    }
+
+    private static boolean hasUtf8Bom(byte[] bytes) {
+        return bytes.length >= UTF8_BOM.length
+                && bytes[0] == UTF8_BOM[0] && bytes[1] == UTF8_BOM[1] && bytes[2] == UTF8_BOM[2];
     }
 }
@@ -0,0 +1,358 @@
+package io.milkwang.util.http;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.HttpUrl;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 按host和路径模板统计下游调用的耗时，通过OkHttp的EventListener记录DNS、建立连接、TLS握手、首字节(TTFB)和整个调用的耗时
+ * <pre>
+ * // HttpClients中的所有客户端默认使用getDefault()，并注册为JMX的io.milkwang.util.http:type=HttpMetrics,name=default
+ * for (EndpointLatency endpoint : HttpMetrics.getDefault().getEndpoints()) {
+ *     logger.info(endpoint.toString());
+ * }
+ * // 对接监控系统
+ * HttpMetrics.getDefault().addSink(sink);
+ * </pre>
+ * <b><i>Note:</i></b>
+ * <ul>
+ *     <li>路径中的数字、uuid、长的十六进制串替换为{id}，其他规则用pathTemplate设置；统计的路径数超过maxEndpoints后归入{other}</li>
+ *     <li>没有发出网络请求的调用(缓存命中、合并后共享结果)和主动取消的调用不统计</li>
+ *     <li>重试时整个调用的耗时包括所有尝试，TTFB为第一次收到响应头的时间</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+public class HttpMetrics implements EventListener.Factory, HttpMetricsMXBean {
+    private static final Logger logger = LoggerFactory.getLogger(HttpMetrics.class);
+    private static final int DEFAULT_MAX_ENDPOINTS = 500;
+    private static final String OTHER_PATH = "/{other}";
+    private static final String ID_SEGMENT = "{id}";
+    private static final int MIN_HEX_ID_LENGTH = 16;
+    private static final HttpMetrics DEFAULT = newDefault();
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final List<MetricsSink> sinks = new CopyOnWriteArrayList<>();
+    private volatile Function<HttpUrl, String> pathTemplate = HttpMetrics::defaultPathTemplate;
+    private volatile int maxEndpoints = DEFAULT_MAX_ENDPOINTS;
+
+    /**
+     * HttpClients中所有客户端共用的统计
+     */
+    public static HttpMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * 从url生成路径模板，例如/user/{id}/orders
+     */
+    public HttpMetrics pathTemplate(Function<HttpUrl, String> pathTemplate) {
+        this.pathTemplate = pathTemplate;
+        return this;
+    }
+
+    /**
+     * 最多统计的host、路径模板数，默认500
+     */
+    public HttpMetrics maxEndpoints(int maxEndpoints) {
+        this.maxEndpoints = maxEndpoints;
+        return this;
+    }
+
+    public HttpMetrics addSink(MetricsSink sink) {
+        sinks.add(sink);
+        return this;
+    }
+
+    public HttpMetrics removeSink(MetricsSink sink) {
+        sinks.remove(sink);
+        return this;
+    }
+
+    /**
+     * 注册为JMX的MBean
+     *
+     * @return 注册失败时为false，例如同一个名字已经注册过
+     */
+    public boolean registerMBean(String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    new ObjectName("io.milkwang.util.http:type=HttpMetrics,name=" + ObjectName.quote(name)));
+            return true;
+        } catch (JMException | SecurityException e) {
+            logger.warn("[[function=registerMBean]] register {} failed, e={}", name, e.toString());
+            return false;
+        }
+    }
+
+    @Override
+    public EventListener create(Call call) {
+        return new CallListener();
+    }
+
+    @Override
+    public List<EndpointLatency> getEndpoints() {
+        List<EndpointLatency> result = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints.values()) {
+            result.add(endpoint.snapshot());
+        }
+        result.sort(Comparator.comparing(EndpointLatency::getHost).thenComparing(EndpointLatency::getPath));
+        return result;
+    }
+
+    /**
+     * @param host host，不是默认端口时为host:port
+     * @param path 路径模板
+     * @return 还没有统计过时为null
+     */
+    public EndpointLatency getEndpoint(String host, String path) {
+        Endpoint endpoint = endpoints.get(host + path);
+        return endpoint == null ? null : endpoint.snapshot();
+    }
+
+    @Override
+    public void reset() {
+        endpoints.clear();
+    }
+
+    /**
+     * 默认的路径模板：纯数字、uuid、至少16位的十六进制串替换为{id}
+     */
+    public static String defaultPathTemplate(HttpUrl url) {
+        List<String> segments = url.pathSegments();
+        StringBuilder builder = new StringBuilder(url.encodedPath().length());
+        for (String segment : segments) {
+            builder.append('/').append(isIdSegment(segment) ? ID_SEGMENT : segment);
+        }
+        return builder.length() == 0 ? "/" : builder.toString();
+    }
+
+    private static boolean isIdSegment(String segment) {
+        if (segment.isEmpty()) {
+            return false;
+        }
+        boolean allDigits = true;
+        boolean hasDigit = false;
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            boolean digit = c >= '0' && c <= '9';
+            hasDigit |= digit;
+            allDigits &= digit;
+            boolean hex = digit || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F') || c == '-';
+            if (!hex) {
+                return false;
+            }
+        }
+        return allDigits || (hasDigit && segment.length() >= MIN_HEX_ID_LENGTH);
+    }
+
+    private Endpoint endpointOf(HttpUrl url) {
+        String host = url.port() == HttpUrl.defaultPort(url.scheme()) ? url.host() : url.host() + ":" + url.port();
+        String path;
+        try {
+            path = pathTemplate.apply(url);
+        } catch (RuntimeException e) {
+            logger.error(e.getLocalizedMessage(), e);
+            path = OTHER_PATH;
+        }
+        Endpoint endpoint = endpoints.get(host + path);
+        if (endpoint != null) {
+            return endpoint;
+        }
+        if (endpoints.size() >= maxEndpoints) {
+            path = OTHER_PATH;
+        }
+        String finalPath = path;
+        return endpoints.computeIfAbsent(host + path, key -> new Endpoint(host, finalPath));
+    }
+
+    private static HttpMetrics newDefault() {
+        HttpMetrics metrics = new HttpMetrics();
+        metrics.registerMBean("default");
+        return metrics;
+    }
+
+    private static final class Endpoint {
+        private final String host;
+        private final String path;
+        private final LatencyHistogram total = new LatencyHistogram();
+        private final LatencyHistogram dns = new LatencyHistogram();
+        private final LatencyHistogram connect = new LatencyHistogram();
+        private final LatencyHistogram tls = new LatencyHistogram();
+        private final LatencyHistogram ttfb = new LatencyHistogram();
+        private final LongAdder failures = new LongAdder();
+
+        Endpoint(String host, String path) {
+            this.host = host;
+            this.path = path;
+        }
+
+        EndpointLatency snapshot() {
+            return new EndpointLatency(host, path, failures.sum(), total, dns, connect, tls, ttfb);
+        }
+    }
+
+    /**
+     * 一个调用的事件都在执行调用的线程中依次回调，只有canceled来自其他线程
+     */
+    private final class CallListener extends EventListener {
+        private long callStart;
+        private long dnsStart;
+        private long dnsNanos = -1;
+        private long connectStart;
+        private long connectNanos = -1;
+        private long secureStart;
+        private long tlsNanos = -1;
+        private long ttfbNanos = -1;
+        private int status = -1;
+        private volatile boolean canceled;
+
+        @Override
+        public void callStart(Call call) {
+            callStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            dnsNanos = Math.max(dnsNanos, 0) + System.nanoTime() - dnsStart;
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connectStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            secureStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            tlsNanos = Math.max(tlsNanos, 0) + System.nanoTime() - secureStart;
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            connectNanos = Math.max(connectNanos, 0) + System.nanoTime() - connectStart;
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol,
+                                  IOException ioe) {
+            connectNanos = Math.max(connectNanos, 0) + System.nanoTime() - connectStart;
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            if (ttfbNanos < 0) {
+                ttfbNanos = System.nanoTime() - callStart;
+            }
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            status = response.code();
+        }
+
+        @Override
+        public void canceled(Call call) {
+            canceled = true;
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            finish(call, false);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            finish(call, true);
+        }
+
+        private void finish(Call call, boolean failed) {
+            if (canceled || (ttfbNanos < 0 && !failed)) {
+                // 主动取消，或者没有发出网络请求
+                return;
+            }
+            long totalNanos = System.nanoTime() - callStart;
+            Endpoint endpoint = endpointOf(call.request().url());
+            endpoint.total.record(totalNanos, TimeUnit.NANOSECONDS);
+            if (failed) {
+                endpoint.failures.increment();
+            }
+            if (dnsNanos >= 0) {
+                endpoint.dns.record(dnsNanos, TimeUnit.NANOSECONDS);
+            }
+            if (connectNanos >= 0) {
+                endpoint.connect.record(connectNanos, TimeUnit.NANOSECONDS);
+            }
+            if (tlsNanos >= 0) {
+                endpoint.tls.record(tlsNanos, TimeUnit.NANOSECONDS);
+            }
+            if (ttfbNanos >= 0) {
+                endpoint.ttfb.record(ttfbNanos, TimeUnit.NANOSECONDS);
+            }
+            if (!sinks.isEmpty()) {
+                publish(endpoint, call.request().method(), failed, totalNanos);
+            }
+        }
+
+        private void publish(Endpoint endpoint, String method, boolean failed, long totalNanos) {
+            Map<String, String> tags = new LinkedHashMap<>(8);
+            tags.put("host", endpoint.host);
+            tags.put("uri", endpoint.path);
+            tags.put("method", method);
+            tags.put("status", failed || status < 0 ? "IO_ERROR" : String.valueOf(status));
+            tags = Collections.unmodifiableMap(tags);
+            for (MetricsSink sink : sinks) {
+                try {
+                    sink.recordTimer("http.client.requests", tags, totalNanos, TimeUnit.NANOSECONDS);
+                    if (dnsNanos >= 0) {
+                        sink.recordTimer("http.client.dns", tags, dnsNanos, TimeUnit.NANOSECONDS);
+                    }
+                    if (connectNanos >= 0) {
+                        sink.recordTimer("http.client.connect", tags, connectNanos, TimeUnit.NANOSECONDS);
+                    }
+                    if (tlsNanos >= 0) {
+                        sink.recordTimer("http.client.tls", tags, tlsNanos, TimeUnit.NANOSECONDS);
+                    }
+                    if (ttfbNanos >= 0) {
+                        sink.recordTimer("http.client.ttfb", tags, ttfbNanos, TimeUnit.NANOSECONDS);
+                    }
+                } catch (RuntimeException e) {
+                    logger.error(e.getLocalizedMessage(), e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package io.milkwang.util.http;
+
+import java.util.List;
+
+/**
+ * 通过JMX查看HttpMetrics，ObjectName为io.milkwang.util.http:type=HttpMetrics,name=名字
+ *
+ * @author nethunder
+ */
+public interface HttpMetricsMXBean {
+    /**
+     * 每个host、路径模板的耗时统计
+     */
+    List<EndpointLatency> getEndpoints();
+
+    /**
+     * 清空所有统计
+     */
+    void reset();
+}
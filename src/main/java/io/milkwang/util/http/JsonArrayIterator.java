@@ -0,0 +1,243 @@
+package io.milkwang.util.http;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 从Reader中逐个读取顶层JSON数组的元素，内存中只保留当前元素的文本，适合很大的数组
+ * <ul>
+ *     <li>每个元素按照JSON.parseObject(元素文本, type)解析，结果与JSONArray.parseArray(text, clazz)中的元素一致</li>
+ *     <li>与parseArray一样：内容为空或null时没有任何元素，不是数组时把整个内容作为唯一的元素，允许数组最后多一个逗号</li>
+ *     <li>数组没有结束、元素之间缺少逗号时抛出JSONException</li>
+ *     <li>读取结束、出错或者close时关闭Reader</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+public class JsonArrayIterator<T> implements Iterator<T>, Closeable {
+    private static final int BUFFER_SIZE = 8192;
+    private static final char[] NULL = "null".toCharArray();
+
+    private final Reader reader;
+    private final Type type;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder element = new StringBuilder();
+    private int position;
+    private int limit;
+    private boolean started;
+    private boolean finished;
+    private boolean prefetched;
+    private T next;
+
+    public JsonArrayIterator(Reader reader, Type type) {
+        this.reader = reader;
+        this.type = type;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (prefetched) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        try {
+            if (readElement()) {
+                next = JSON.parseObject(element.toString(), type);
+                prefetched = true;
+            }
+        } catch (IOException e) {
+            closeQuietly();
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            closeQuietly();
+            throw e;
+        }
+        return prefetched;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T value = next;
+        next = null;
+        prefetched = false;
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        reader.close();
+    }
+
+    /**
+     * 把下一个元素的文本读到element中，数组已经结束时返回false
+     */
+    private boolean readElement() throws IOException {
+        if (!started) {
+            started = true;
+            element.setLength(0);
+            int c = skipWhitespace();
+            if (c < 0) {
+                return finish();
+            }
+            if (c == 'n' && readNull()) {
+                return finish();
+            }
+            if (c != '[') {
+                readRemaining();
+                return true;
+            }
+            position++;
+            c = skipWhitespace();
+            if (c == ']') {
+                position++;
+                return finish();
+            }
+            if (c == ',') {
+                throw new JSONException("expect element but " + describe(c));
+            }
+        } else {
+            int c = skipWhitespace();
+            if (c == ']') {
+                position++;
+                return finish();
+            }
+            if (c != ',') {
+                throw new JSONException("expect ',' or ']' but " + describe(c));
+            }
+            position++;
+            c = skipWhitespace();
+            if (c == ']') {
+                position++;
+                return finish();
+            }
+            if (c == ',') {
+                throw new JSONException("expect element but " + describe(c));
+            }
+        }
+        element.setLength(0);
+        int depth = 0;
+        boolean inString = false;
+        boolean escape = false;
+        int start = position;
+        while (true) {
+            if (position == limit) {
+                element.append(buffer, start, position - start);
+                if (!fill()) {
+                    throw new JSONException("unexpected end of json array");
+                }
+                start = position;
+            }
+            char c = buffer[position];
+            if (inString) {
+                if (escape) {
+                    escape = false;
+                } else if (c == '\\') {
+                    escape = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (depth == 0) {
+                    break;
+                }
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                break;
+            }
+            position++;
+        }
+        // 结束符留给下一次读取
+        element.append(buffer, start, position - start);
+        return true;
+    }
+
+    private boolean finish() throws IOException {
+        int c = skipWhitespace();
+        if (c >= 0) {
+            throw new JSONException("unexpected content after json array: " + describe(c));
+        }
+        close();
+        return false;
+    }
+
+    /**
+     * 内容是否只有null，不是时已经读取的字符保留在element中
+     */
+    private boolean readNull() throws IOException {
+        for (char expected : NULL) {
+            if (position == limit && !fill() || buffer[position] != expected) {
+                return false;
+            }
+            element.append(expected);
+            position++;
+        }
+        return skipWhitespace() < 0;
+    }
+
+    /**
+     * 不是数组时把剩下的全部内容作为一个元素
+     */
+    private void readRemaining() throws IOException {
+        do {
+            element.append(buffer, position, limit - position);
+            position = limit;
+        } while (fill());
+        close();
+    }
+
+    /**
+     * 跳过空白，返回下一个字符但不消费，结束时返回-1
+     */
+    private int skipWhitespace() throws IOException {
+        while (true) {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            char c = buffer[position];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+            position++;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int read;
+        do {
+            read = reader.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        position = 0;
+        limit = Math.max(read, 0);
+        return read > 0;
+    }
+
+    private static String describe(int c) {
+        return c < 0 ? "end of input" : "'" + (char) c + "'";
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException ignored) {
+            // 已经在抛出更早的异常
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package io.milkwang.util.http;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的耗时直方图，按微秒记录，桶的宽度随数值按2的幂增长、每个幂再均分为16份(log-linear，与HdrHistogram的布局相同)
+ * <ul>
+ *     <li>分位数的相对误差不超过1/16，最大记录约38小时(2^37-1微秒)，超过的按最大值记录</li>
+ *     <li>record只有几次原子自增，可以在OkHttp的线程中直接调用</li>
+ *     <li>读取时不加锁，并发写入时各个统计值之间可能有少量偏差</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void record(long duration, TimeUnit unit) {
+        long micros = Math.min(Math.max(unit.toMicros(duration), 0), MAX_VALUE);
+        counts.incrementAndGet(bucketOf(micros));
+        count.increment();
+        sumMicros.add(micros);
+        long max = maxMicros.get();
+        while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+            max = maxMicros.get();
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMean(TimeUnit unit) {
+        long n = count.sum();
+        return n == 0 ? 0 : toUnit(sumMicros.sum(), unit) / n;
+    }
+
+    public double getMax(TimeUnit unit) {
+        return toUnit(maxMicros.get(), unit);
+    }
+
+    /**
+     * @param percentile 0~1，例如0.99
+     * @return 对应分位数所在桶的上界，不超过记录过的最大值；没有记录时为0
+     */
+    public double getPercentile(double percentile, TimeUnit unit) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return toUnit(Math.min(upperBoundOf(i), maxMicros.get()), unit);
+            }
+        }
+        return getMax(unit);
+    }
+
+    /**
+     * 清空统计，与并发的record之间不保证原子
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sumMicros.reset();
+        maxMicros.set(0);
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long lower = (1L << exponent) + (subBucket << (exponent - SUB_BUCKET_BITS));
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    private static double toUnit(long micros, TimeUnit unit) {
+        return (double) micros * 1000 / unit.toNanos(1);
+    }
+}
@@ -0,0 +1,27 @@
+package io.milkwang.util.http;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接收HttpMetrics的每一次计时，用于对接Micrometer等监控系统，名字和tag沿用Micrometer的命名方式
+ * <pre>
+ * HttpMetrics.getDefault().addSink((name, tags, amount, unit) -&gt;
+ *         Timer.builder(name).tags(Tags.of(tags.entrySet().stream()
+ *                 .map(e -&gt; Tag.of(e.getKey(), e.getValue())).collect(Collectors.toList())))
+ *                 .register(registry).record(amount, unit));
+ * </pre>
+ * 在OkHttp的线程中同步调用，实现不能阻塞
+ *
+ * @author nethunder
+ */
+@FunctionalInterface
+public interface MetricsSink {
+    /**
+     * @param name   http.client.requests(整个调用)、http.client.dns、http.client.connect、http.client.tls、http.client.ttfb
+     * @param tags   host、uri(路径模板)、method、status(状态码，失败时为IO_ERROR)
+     * @param amount 耗时
+     * @param unit   时间单位
+     */
+    void recordTimer(String name, Map<String, String> tags, long amount, TimeUnit unit);
+}
@@ -0,0 +1,409 @@
+package io.milkwang.util.http;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import okhttp3.CacheControl;
+import okhttp3.Handshake;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 内存中的GET响应缓存，用于配置、字典等很少变化的接口
+ * <pre>
+ * ResponseCache cache = new ResponseCache(32 * 1024 * 1024);
+ * HttpHelper.create(url).cache(cache).methodGet().getData(Config.class);
+ * // 或者对整个客户端生效
+ * HttpClients.registerHost("config.internal", new HttpClientConfig().addInterceptor(cache));
+ * </pre>
+ * <b><i>Note:</i></b>
+ * <ul>
+ *     <li>按响应体大小限制总容量，超过时淘汰最近最少使用的响应；单个响应超过maxEntryBytes时不缓存</li>
+ *     <li>缓存在所有用户的请求之间共享，按共享缓存处理：使用s-maxage、max-age、Expires计算有效期，
+ *     不缓存private、no-store的响应，带Authorization的请求只在响应允许时缓存</li>
+ *     <li>过期后带上If-None-Match/If-Modified-Since重新验证，下游返回304时继续使用缓存的响应体</li>
+ *     <li>同一个url并发的未命中和重新验证只发出一次请求，其余调用等待并共享结果；Authorization、Cookie不同的请求不合并，
+ *     不能缓存的响应不共享</li>
+ *     <li>同一个url的非GET请求成功后删除缓存</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+public class ResponseCache implements Interceptor {
+    private static final Set<String> NOT_UPDATED_HEADERS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "content-length", "content-encoding", "transfer-encoding", "content-type")));
+
+    private final Cache<String, Entry> entries;
+    private final SingleFlight<String, Entry> flights = new SingleFlight<>();
+    private volatile long maxEntryBytes;
+    private volatile long defaultMaxAgeMillis;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+
+    /**
+     * @param maxBytes 缓存的响应体和响应头的总大小上限
+     */
+    public ResponseCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+        }
+        this.entries = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, Entry entry) -> entry.weight())
+                .build();
+        this.maxEntryBytes = Math.min(Math.max(maxBytes / 16, 1), Integer.MAX_VALUE);
+    }
+
+    /**
+     * 单个响应的大小上限，默认为总容量的1/16
+     */
+    public ResponseCache maxEntryBytes(long maxEntryBytes) {
+        this.maxEntryBytes = Math.min(maxEntryBytes, Integer.MAX_VALUE);
+        return this;
+    }
+
+    /**
+     * 响应没有Cache-Control、Expires时的有效期，默认为0(有ETag、Last-Modified时每次重新验证，否则不缓存)
+     */
+    public ResponseCache defaultMaxAge(long maxAge, TimeUnit unit) {
+        this.defaultMaxAgeMillis = unit.toMillis(maxAge);
+        return this;
+    }
+
+    /**
+     * 删除一个url的缓存
+     */
+    public void invalidate(String url) {
+        entries.invalidate(HttpUrl.get(url).toString());
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        entries.invalidateAll();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String key = request.url().toString();
+        if (!"GET".equals(request.method())) {
+            Response response = chain.proceed(request);
+            if (response.isSuccessful() && !"HEAD".equals(request.method())) {
+                entries.invalidate(key);
+            }
+            return response;
+        }
+        if (request.cacheControl().noStore() || hasConditions(request)) {
+            // 调用方自己做条件请求时不介入
+            return chain.proceed(request);
+        }
+        Entry cached = entries.getIfPresent(key);
+        if (cached != null && !cached.matches(request)) {
+            cached = null;
+        }
+        if (cached != null && !request.cacheControl().noCache() && cached.isFresh(System.nanoTime())) {
+            hits.incrementAndGet();
+            return cached.toResponse(request);
+        }
+        Entry stale = cached;
+        Response[] unbuffered = new Response[1];
+        Entry[] own = new Entry[1];
+        Entry entry = flights.execute(flightKey(request), chain.call(), () -> fetch(chain, key, stale, unbuffered, own));
+        if (unbuffered[0] != null) {
+            return unbuffered[0];
+        }
+        if (own[0] != null) {
+            return own[0].toResponse(request);
+        }
+        if (entry == null || !entry.matches(request)) {
+            // 共享的响应太大、不能缓存或者Vary的请求头不同
+            return chain.proceed(request);
+        }
+        return entry.toResponse(request);
+    }
+
+    /**
+     * 从缓存中直接返回的次数
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * 向下游请求完整响应的次数
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * 重新验证时下游返回304的次数
+     */
+    public long getNotModifiedCount() {
+        return notModified.get();
+    }
+
+    /**
+     * 等待并共享其他并发请求结果的次数
+     */
+    public long getSharedCount() {
+        return flights.getShared();
+    }
+
+    /**
+     * 当前缓存的响应数
+     */
+    public long size() {
+        return entries.size();
+    }
+
+    /**
+     * @param unbuffered 响应体超过maxEntryBytes时不读取，直接返回给执行请求的调用
+     * @param own        不能缓存的响应(private、no-store等)只返回给执行请求的调用
+     * @return 可以共享的响应，为null时等待的调用各自发出请求
+     */
+    private Entry fetch(Chain chain, String key, Entry stale, Response[] unbuffered, Entry[] own) throws IOException {
+        Request request = chain.request();
+        if (stale != null && stale.hasValidator()) {
+            Request.Builder conditional = request.newBuilder();
+            if (stale.etag != null) {
+                conditional.header("If-None-Match", stale.etag);
+            }
+            if (stale.lastModified != null) {
+                conditional.header("If-Modified-Since", stale.lastModified);
+            }
+            request = conditional.build();
+        }
+        Response response = chain.proceed(request);
+        long now = System.nanoTime();
+        if (stale != null && response.code() == 304) {
+            notModified.incrementAndGet();
+            Entry updated = stale.revalidate(response, now);
+            response.close();
+            if (updated.isFresh(now) || updated.hasValidator()) {
+                entries.put(key, updated);
+            }
+            return updated;
+        }
+        misses.incrementAndGet();
+        ResponseBody peeked = response.peekBody(maxEntryBytes + 1);
+        if (peeked.contentLength() > maxEntryBytes) {
+            entries.invalidate(key);
+            unbuffered[0] = response;
+            return null;
+        }
+        byte[] body = peeked.bytes();
+        response.close();
+        Entry entry = new Entry(chain.request(), response, response.headers(), body, now);
+        if (!isStorable(chain.request(), response, entry)) {
+            entries.invalidate(key);
+            own[0] = entry;
+            return null;
+        }
+        entries.put(key, entry);
+        return entry;
+    }
+
+    /**
+     * 同时发出的请求按url和身份合并，不同用户的请求不共享结果
+     */
+    private static String flightKey(Request request) {
+        return request.url() + "\n" + String.join("\n", request.headers("Authorization"))
+                + "\n" + String.join("\n", request.headers("Cookie"));
+    }
+
+    private boolean isStorable(Request request, Response response, Entry entry) {
+        if (response.code() != 200) {
+            return false;
+        }
+        CacheControl control = response.cacheControl();
+        if (control.noStore() || control.isPrivate() || entry.varyAll) {
+            return false;
+        }
+        if (request.header("Authorization") != null
+                && !control.isPublic() && !control.mustRevalidate() && control.sMaxAgeSeconds() == -1) {
+            return false;
+        }
+        return entry.expiresAtNanos > entry.receivedAtNanos || entry.hasValidator();
+    }
+
+    private static boolean hasConditions(Request request) {
+        return request.header("If-None-Match") != null || request.header("If-Modified-Since") != null;
+    }
+
+    /**
+     * 缓存的响应，304时用新的响应头生成新的Entry，不修改原有的
+     */
+    private final class Entry {
+        private final Protocol protocol;
+        private final int code;
+        private final String message;
+        private final Handshake handshake;
+        private final Headers headers;
+        private final byte[] body;
+        private final MediaType contentType;
+        private final String etag;
+        private final String lastModified;
+        private final Set<String> vary;
+        private final boolean varyAll;
+        private final Headers varyRequestHeaders;
+        private final long sentAtMillis;
+        private final long receivedAtMillis;
+        private final long receivedAtNanos;
+        private final long expiresAtNanos;
+
+        Entry(Request request, Response response, Headers headers, byte[] body, long now) {
+            this.protocol = response.protocol();
+            this.code = response.code();
+            this.message = response.message();
+            this.handshake = response.handshake();
+            this.headers = headers;
+            this.body = body;
+            String type = headers.get("Content-Type");
+            this.contentType = type != null ? MediaType.parse(type) : null;
+            this.etag = headers.get("ETag");
+            this.lastModified = headers.get("Last-Modified");
+            this.vary = varyFields(headers);
+            this.varyAll = vary.contains("*");
+            Headers.Builder varyBuilder = new Headers.Builder();
+            for (String name : vary) {
+                for (String value : request.headers(name)) {
+                    varyBuilder.add(name, value);
+                }
+            }
+            this.varyRequestHeaders = varyBuilder.build();
+            this.sentAtMillis = response.sentRequestAtMillis();
+            this.receivedAtMillis = response.receivedResponseAtMillis();
+            this.receivedAtNanos = now;
+            this.expiresAtNanos = now + TimeUnit.MILLISECONDS.toNanos(freshMillis(headers, receivedAtMillis));
+        }
+
+        boolean isFresh(long now) {
+            return expiresAtNanos - now > 0;
+        }
+
+        boolean hasValidator() {
+            return etag != null || lastModified != null;
+        }
+
+        /**
+         * Vary中的请求头与缓存时相同
+         */
+        boolean matches(Request request) {
+            if (varyAll) {
+                return false;
+            }
+            for (String name : vary) {
+                if (!request.headers(name).equals(varyRequestHeaders.values(name))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        Entry revalidate(Response notModified, long now) {
+            Headers.Builder merged = headers.newBuilder();
+            for (String name : notModified.headers().names()) {
+                if (!NOT_UPDATED_HEADERS.contains(name.toLowerCase())) {
+                    merged.removeAll(name);
+                    for (String value : notModified.headers(name)) {
+                        merged.add(name, value);
+                    }
+                }
+            }
+            return new Entry(notModified.request(), new Response.Builder()
+                    .request(notModified.request())
+                    .protocol(protocol)
+                    .code(code)
+                    .message(message)
+                    .handshake(handshake)
+                    .sentRequestAtMillis(notModified.sentRequestAtMillis())
+                    .receivedResponseAtMillis(notModified.receivedResponseAtMillis())
+                    .build(), merged.build(), body, now);
+        }
+
+        Response toResponse(Request request) {
+            return new Response.Builder()
+                    .request(request)
+                    .protocol(protocol)
+                    .code(code)
+                    .message(message)
+                    .handshake(handshake)
+                    .headers(headers)
+                    .body(ResponseBody.create(body, contentType))
+                    .sentRequestAtMillis(sentAtMillis)
+                    .receivedResponseAtMillis(receivedAtMillis)
+                    .build();
+        }
+
+        int weight() {
+            return (int) Math.min(Integer.MAX_VALUE, body.length + headers.byteCount());
+        }
+    }
+
+    private long freshMillis(Headers headers, long receivedAtMillis) {
+        CacheControl control = CacheControl.parse(headers);
+        if (control.noCache()) {
+            return 0;
+        }
+        long ageMillis = 0;
+        String age = headers.get("Age");
+        if (age != null) {
+            try {
+                ageMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(age.trim()));
+            } catch (NumberFormatException ignored) {
+                // 忽略格式错误的Age
+            }
+        }
+        long lifetimeMillis;
+        if (control.sMaxAgeSeconds() != -1) {
+            lifetimeMillis = TimeUnit.SECONDS.toMillis(control.sMaxAgeSeconds());
+        } else if (control.maxAgeSeconds() != -1) {
+            lifetimeMillis = TimeUnit.SECONDS.toMillis(control.maxAgeSeconds());
+        } else if (headers.getDate("Expires") != null) {
+            Date date = headers.getDate("Date");
+            long base = date != null ? date.getTime() : receivedAtMillis;
+            lifetimeMillis = headers.getDate("Expires").getTime() - base;
+        } else {
+            lifetimeMillis = defaultMaxAgeMillis;
+        }
+        return Math.max(0, lifetimeMillis - ageMillis);
+    }
+
+    private static Set<String> varyFields(Headers headers) {
+        List<String> values = headers.values("Vary");
+        if (values.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> fields = new LinkedHashSet<>();
+        for (String value : values) {
+            for (String field : value.split(",")) {
+                String name = field.trim();
+                if (!name.isEmpty()) {
+                    fields.add(name);
+                }
+            }
+        }
+        return fields;
+    }
+}
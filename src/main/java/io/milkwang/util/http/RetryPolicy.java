@@ -0,0 +1,225 @@
+package io.milkwang.util.http;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 失败重试，重试间隔按指数增长并加入随机抖动(full jitter)，避免下游恢复时所有调用方同时重试
+ * <pre>
+ * RetryPolicy retry = new RetryPolicy(3, 100, 2000, TimeUnit.MILLISECONDS);
+ * HttpHelper.create(url).retry(retry).methodGet().getData(User.class);
+ * // 或者对整个客户端生效，放在CircuitBreakerPolicy之前，熔断器会统计每一次尝试
+ * HttpClients.registerHost("order.internal", new HttpClientConfig().addInterceptor(retry).addInterceptor(breaker));
+ * </pre>
+ * <b><i>Note:</i></b>
+ * <ul>
+ *     <li>默认只重试幂等的方法(GET、HEAD、PUT、DELETE、OPTIONS)，请求体只能发送一次时不重试</li>
+ *     <li>连接失败、超时等IOException以及502、503、504状态码会重试，熔断器拒绝的请求不重试</li>
+ *     <li>所有尝试共用HttpHelper.timeout/callTimeout设置的总超时时间，等待之后已经来不及再尝试时直接返回最后一次的结果</li>
+ *     <li>通过HttpHelper.retry设置时，executeAsync、fanOut和对冲请求的重试在调度线程中等待，不占用OkHttp的线程；
+ *     同步调用以及作为客户端拦截器时在执行请求的线程中等待</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+public class RetryPolicy implements Interceptor {
+    private static final Set<String> IDEMPOTENT_METHODS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("GET", "HEAD", "PUT", "DELETE", "OPTIONS", "TRACE")));
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private volatile Set<Integer> retryStatus = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(502, 503, 504)));
+    private volatile boolean retryNonIdempotent;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong recovered = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+
+    /**
+     * @param maxAttempts 最多尝试的次数，包括第一次
+     * @param baseDelay   第一次重试前的最大等待时间，之后每次翻倍
+     * @param maxDelay    单次等待的上限
+     * @param unit        时间单位
+     */
+    public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay, TimeUnit unit) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be positive: " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = unit.toMillis(baseDelay);
+        this.maxDelayMillis = unit.toMillis(maxDelay);
+    }
+
+    /**
+     * 需要重试的状态码，默认502、503、504
+     */
+    public RetryPolicy retryOnStatus(Integer... codes) {
+        this.retryStatus = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(codes)));
+        return this;
+    }
+
+    /**
+     * 是否重试POST等非幂等的请求，只有下游做了幂等处理时才能打开
+     */
+    public RetryPolicy retryNonIdempotent(boolean retryNonIdempotent) {
+        this.retryNonIdempotent = retryNonIdempotent;
+        return this;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!isRetryable(request)) {
+            return chain.proceed(request);
+        }
+        calls.incrementAndGet();
+        long start = System.nanoTime();
+        long budgetNanos = chain.call().timeout().timeoutNanos();
+        for (int attempt = 1; ; attempt++) {
+            Response response = null;
+            IOException failure = null;
+            try {
+                response = chain.proceed(request);
+            } catch (CircuitBreakerOpenException e) {
+                throw e;
+            } catch (IOException e) {
+                failure = e;
+            }
+            boolean failed = failure != null || isRetryableStatus(response.code());
+            if (!failed) {
+                if (attempt > 1) {
+                    recovered.incrementAndGet();
+                }
+                return response;
+            }
+            long delay = chain.call().isCanceled() ? -1 : retryDelayMillis(attempt, System.nanoTime() - start, budgetNanos);
+            if (delay < 0) {
+                exhausted.incrementAndGet();
+                if (failure != null) {
+                    throw failure;
+                }
+                return response;
+            }
+            if (response != null) {
+                response.close();
+            }
+            retries.incrementAndGet();
+            sleep(delay);
+        }
+    }
+
+    /**
+     * 第attempt次尝试失败后，下一次重试前的等待时间
+     *
+     * @param elapsedNanos 第一次尝试开始后经过的时间
+     * @param budgetNanos  所有尝试共用的超时时间，没有时为0
+     * @return 尝试次数用完，或者等待之后超时时间已经不够再尝试时返回-1
+     */
+    long retryDelayMillis(int attempt, long elapsedNanos, long budgetNanos) {
+        if (attempt >= maxAttempts) {
+            return -1;
+        }
+        long delay = backoffMillis(attempt);
+        if (budgetNanos > 0 && elapsedNanos + TimeUnit.MILLISECONDS.toNanos(delay) >= budgetNanos) {
+            return -1;
+        }
+        return delay;
+    }
+
+    /**
+     * 第attempt次失败后的等待时间，在[0, min(maxDelay, baseDelay * 2^(attempt-1))]中随机
+     */
+    long backoffMillis(int attempt) {
+        long ceiling = baseDelayMillis << Math.min(attempt - 1, 30);
+        if (ceiling <= 0 || ceiling > maxDelayMillis) {
+            ceiling = maxDelayMillis;
+        }
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    static boolean isIdempotent(String method) {
+        return IDEMPOTENT_METHODS.contains(method);
+    }
+
+    boolean isRetryable(Request request) {
+        if (maxAttempts == 1 || !retryNonIdempotent && !isIdempotent(request.method())) {
+            return false;
+        }
+        RequestBody body = request.body();
+        return body == null || !body.isOneShot();
+    }
+
+    boolean isRetryableStatus(int code) {
+        return retryStatus.contains(code);
+    }
+
+    void onCall() {
+        calls.incrementAndGet();
+    }
+
+    void onRetry() {
+        retries.incrementAndGet();
+    }
+
+    void onRecovered() {
+        recovered.incrementAndGet();
+    }
+
+    void onExhausted() {
+        exhausted.incrementAndGet();
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("retry interrupted");
+        }
+    }
+
+    /**
+     * 经过重试处理的调用数
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * 发起的重试次数
+     */
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * 重试后成功的调用数
+     */
+    public long getRecovered() {
+        return recovered.get();
+    }
+
+    /**
+     * 用完所有尝试仍然失败的调用数
+     */
+    public long getExhausted() {
+        return exhausted.get();
+    }
+}
@@ -0,0 +1,123 @@
+package io.milkwang.util.http;
+
+import okhttp3.Call;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 异步请求的重试，两次尝试之间在调度线程中等待，不占用OkHttp的线程
+ *
+ * @author nethunder
+ */
+final class RetryingCall {
+    private final RetryPolicy policy;
+    private final Request request;
+    private final Function<Request, Call> callFactory;
+    private final ScheduledExecutorService scheduler;
+    private final CompletableFuture<Response> result = new CompletableFuture<>();
+    private final long start = System.nanoTime();
+    /**
+     * 第一次尝试的callTimeout，之后的尝试只使用剩余的时间
+     */
+    private long budgetNanos;
+    private int attempts;
+    private CompletableFuture<Response> current;
+    private ScheduledFuture<?> timer;
+
+    RetryingCall(RetryPolicy policy, Request request, Function<Request, Call> callFactory, ScheduledExecutorService scheduler) {
+        this.policy = policy;
+        this.request = request;
+        this.callFactory = callFactory;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return 读完响应体时完成，异常完成时取消正在执行的尝试和等待中的重试
+     */
+    CompletableFuture<Response> start() {
+        policy.onCall();
+        result.whenComplete((response, e) -> {
+            if (e != null) {
+                cancelPending();
+            }
+        });
+        launch();
+        return result;
+    }
+
+    private void launch() {
+        Call call = callFactory.apply(request);
+        int attempt;
+        CompletableFuture<Response> future;
+        synchronized (this) {
+            if (result.isDone()) {
+                return;
+            }
+            attempt = ++attempts;
+            if (attempt == 1) {
+                budgetNanos = call.timeout().timeoutNanos();
+            } else if (budgetNanos > 0) {
+                long remaining = budgetNanos - (System.nanoTime() - start);
+                call.timeout().timeout(Math.max(remaining, 1), TimeUnit.NANOSECONDS);
+            }
+            future = HttpHelper.enqueueBuffered(call);
+            current = future;
+        }
+        future.whenComplete((response, e) -> onAttempt(attempt, response, e));
+    }
+
+    private void onAttempt(int attempt, Response response, Throwable e) {
+        if (result.isDone()) {
+            return;
+        }
+        if (e == null && !policy.isRetryableStatus(response.code())) {
+            if (attempt > 1) {
+                policy.onRecovered();
+            }
+            result.complete(response);
+            return;
+        }
+        if (e instanceof CircuitBreakerOpenException) {
+            result.completeExceptionally(e);
+            return;
+        }
+        long delay = policy.retryDelayMillis(attempt, System.nanoTime() - start, budgetNanos);
+        if (delay < 0) {
+            policy.onExhausted();
+            if (e != null) {
+                result.completeExceptionally(e);
+            } else {
+                result.complete(response);
+            }
+            return;
+        }
+        policy.onRetry();
+        synchronized (this) {
+            if (!result.isDone()) {
+                timer = scheduler.schedule(this::launch, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void cancelPending() {
+        CompletableFuture<Response> future;
+        ScheduledFuture<?> pendingTimer;
+        synchronized (this) {
+            future = current;
+            pendingTimer = timer;
+        }
+        if (pendingTimer != null) {
+            pendingTimer.cancel(false);
+        }
+        if (future != null) {
+            future.completeExceptionally(new IOException("Canceled"));
+        }
+    }
+}
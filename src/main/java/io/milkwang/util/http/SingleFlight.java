@@ -0,0 +1,122 @@
+package io.milkwang.util.http;
+
+import okhttp3.Call;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 相同key的并发调用只执行一次，其余调用等待并共享结果，结果不做缓存
+ * <ul>
+ *     <li>执行的调用被取消时，等待的调用重新发起，不共享取消的结果</li>
+ *     <li>等待中的调用被取消(包括callTimeout到期)时立即抛出异常，不影响正在执行的调用</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+final class SingleFlight<K, V> {
+    /**
+     * OkHttp取消调用时不会通知拦截器，等待时按这个间隔检查是否已经取消
+     */
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+
+    interface Loader<V> {
+        V load() throws IOException;
+    }
+
+    /**
+     * @param call   当前的调用
+     * @param loader 没有相同key的调用在执行时执行
+     * @return loader的结果，可能来自其他调用
+     */
+    V execute(K key, Call call, Loader<V> loader) throws IOException {
+        while (true) {
+            CompletableFuture<V> flight = new CompletableFuture<>();
+            CompletableFuture<V> existing = flights.putIfAbsent(key, flight);
+            if (existing == null) {
+                return lead(key, flight, call, loader);
+            }
+            try {
+                V value = await(existing, call);
+                if (value != null) {
+                    shared.incrementAndGet();
+                }
+                return value;
+            } catch (LeaderCanceledException ignored) {
+                // 执行的调用被取消，重新竞争
+            }
+        }
+    }
+
+    /**
+     * 实际执行的次数
+     */
+    long getExecuted() {
+        return executed.get();
+    }
+
+    /**
+     * 共享其他调用结果的次数，结果为null(调用方各自请求)时不计
+     */
+    long getShared() {
+        return shared.get();
+    }
+
+    private V lead(K key, CompletableFuture<V> flight, Call call, Loader<V> loader) throws IOException {
+        executed.incrementAndGet();
+        try {
+            V value = loader.load();
+            flight.complete(value);
+            return value;
+        } catch (IOException | RuntimeException | Error e) {
+            flight.completeExceptionally(call.isCanceled() ? new LeaderCanceledException() : e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    private V await(CompletableFuture<V> flight, Call call) throws IOException {
+        while (true) {
+            if (call.isCanceled()) {
+                throw new IOException("Canceled");
+            }
+            try {
+                return flight.get(POLL_NANOS, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException ignored) {
+                // 继续等待
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for an identical call");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof LeaderCanceledException) {
+                    throw (LeaderCanceledException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                // 每个调用方各自抛出异常，堆栈中保留执行调用的异常
+                throw new IOException(cause.getMessage(), cause);
+            }
+        }
+    }
+
+    private static final class LeaderCanceledException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        LeaderCanceledException() {
+            super("Canceled", null);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package io.milkwang.util.http;
+
+import io.milkwang.framework.tracer.TraceContext;
+import io.milkwang.framework.tracer.TracerUtils;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把当前请求的追踪信息(requestId、milkCode、username)写到发出的http请求头中，并记录每次调用的耗时(到收到响应头为止)
+ * <ul>
+ *     <li>请求头中有用户信息，只能发给内部服务；propagate为false时只记录耗时，不写入请求头</li>
+ *     <li>追踪信息优先取请求的tag(TraceContext.class)，没有时取当前线程的MDC；异步调用在提交时设置tag</li>
+ *     <li>调用方已经设置的请求头不会被覆盖</li>
+ *     <li>没有requestId时(例如定时任务)按照TracerUtils的生成方式生成一个，下游日志仍然可以关联</li>
+ *     <li>请求带有tag(Skip.class)时不做任何处理，用于调用不应该看到用户信息的第三方接口</li>
+ * </ul>
+ *
+ * @author nethunder
+ */
+public class TraceInterceptor implements Interceptor {
+    private static final Logger logger = LoggerFactory.getLogger(TraceInterceptor.class);
+    private static final long DEFAULT_SLOW_MILLIS = 1000;
+
+    private final long slowNanos;
+    private final boolean propagate;
+
+    /**
+     * 写入追踪请求头，超过1秒的调用记为慢调用
+     */
+    public TraceInterceptor() {
+        this(DEFAULT_SLOW_MILLIS, true);
+    }
+
+    /**
+     * @param propagate 是否写入追踪请求头
+     */
+    public TraceInterceptor(boolean propagate) {
+        this(DEFAULT_SLOW_MILLIS, propagate);
+    }
+
+    /**
+     * @param slowMillis 超过这个耗时的调用以info级别输出，其余调用以debug级别输出
+     * @param propagate  是否写入追踪请求头
+     */
+    public TraceInterceptor(long slowMillis, boolean propagate) {
+        this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowMillis);
+        this.propagate = propagate;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (request.tag(Skip.class) != null) {
+            return chain.proceed(request);
+        }
+        TraceContext context = request.tag(TraceContext.class);
+        String requestId = request.header(HttpHelper.MILK_REQUEST_ID_HEADER);
+        if (!propagate) {
+            if (requestId == null) {
+                // 只用于日志
+                requestId = context != null ? context.getRequestId() : TracerUtils.getRequestId();
+            }
+            return proceed(chain, request, requestId);
+        }
+        String milkCode = request.header(HttpHelper.MILK_CODE_HEADER);
+        String username = request.header(HttpHelper.MILK_USER_NAME);
+        Request.Builder builder = null;
+        if (requestId == null) {
+            requestId = context != null ? context.getRequestId() : TracerUtils.getRequestId();
+            if (requestId == null || requestId.isEmpty()) {
+                requestId = TracerUtils.generateRequestId();
+            }
+            builder = request.newBuilder().header(HttpHelper.MILK_REQUEST_ID_HEADER, requestId);
+        }
+        if (milkCode == null) {
+            milkCode = context != null ? context.getMilkCode() : TracerUtils.getMilkCode();
+            if (milkCode != null && !milkCode.isEmpty()) {
+                builder = (builder != null ? builder : request.newBuilder()).header(HttpHelper.MILK_CODE_HEADER, milkCode);
+            }
+        }
+        if (username == null) {
+            username = context != null ? context.get(TracerUtils.MDC_KEY_USERNAME) : TracerUtils.getMilkUsername();
+            if (username != null && !username.isEmpty()) {
+                // 接收方TracerUtils会按utf-8解码
+                builder = (builder != null ? builder : request.newBuilder())
+                        .header(HttpHelper.MILK_USER_NAME, HttpHelper.getValueEncoded(username));
+            }
+        }
+        if (builder != null) {
+            request = builder.build();
+        }
+        return proceed(chain, request, requestId);
+    }
+
+    private Response proceed(Chain chain, Request request, String requestId) throws IOException {
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException | RuntimeException e) {
+            long cost = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (chain.call().isCanceled()) {
+                // fanOut到期、对冲请求落后时主动取消，不是下游的问题
+                logger.debug("[[function=intercept]] {} {} canceled, requestId={}, cost={}ms",
+                        request.method(), request.url().redact(), requestId, cost);
+                throw e;
+            }
+            logger.warn("[[function=intercept]] {} {} failed, requestId={}, cost={}ms, e={}",
+                    request.method(), request.url().redact(), requestId, cost, e.toString());
+            throw e;
+        }
+        long costNanos = System.nanoTime() - start;
+        if (costNanos >= slowNanos) {
+            logger.info("[[function=intercept]] {} {} code={}, requestId={}, cost={}ms",
+                    request.method(), request.url().redact(), response.code(), requestId,
+                    TimeUnit.NANOSECONDS.toMillis(costNanos));
+        } else if (logger.isDebugEnabled()) {
+            logger.debug("[[function=intercept]] {} {} code={}, requestId={}, cost={}ms",
+                    request.method(), request.url().redact(), response.code(), requestId,
+                    TimeUnit.NANOSECONDS.toMillis(costNanos));
+        }
+        return response;
+    }
+
+    /**
+     * 请求tag，带有这个tag的请求不写入追踪信息
+     */
+    public static final class Skip {
+        public static final Skip INSTANCE = new Skip();
+
+        private Skip() {
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package io.milkwang.util.image;
 
 import io.milkwang.util.common.TextUtils;
-import okhttp3.OkHttpClient;
+import io.milkwang.util.http.HttpClients;
 import okhttp3.Request;
 import okhttp3.Response;
 import org.apache.commons.lang3.StringUtils;
@@ -16,19 +16,11 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.concurrent.TimeUnit;
 
 /**
  * 图片工具类
  */
 public class ImageUtils {
-    private static final int CONNECTION_TIMEOUT = 3;
-    private static final int READ_TIMEOUT = 60;
-
-    private static OkHttpClient client = new OkHttpClient.Builder()
-            .connectTimeout(CONNECTION_TIMEOUT, TimeUnit.SECONDS)
-            .readTimeout(READ_TIMEOUT, TimeUnit.SECONDS)
-            .build();
     private static Logger logger = LoggerFactory.getLogger(ImageUtils.class);
 
     /**
@@ -194,7 +186,7 @@ public class ImageUtils {
                     .build();
             Response response = null;
             try {
-                response = client.newCall(request).execute();
+                response = HttpClients.get(HttpClients.IMAGE).newCall(request).execute();
                 String xErrorNo = response.header("X-ErrNo");
                 if (xErrorNo != null && "-6101".equalsIgnoreCase(xErrorNo)) {
                     return null;